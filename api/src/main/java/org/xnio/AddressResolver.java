@@ -0,0 +1,53 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * A resolver of host names, used by a worker to resolve unresolved destination addresses away from its I/O threads.
+ * A resolver may block.
+ *
+ * @see Options#WORKER_RESOLVER
+ */
+public interface AddressResolver {
+
+    /**
+     * Resolve a host name to its addresses.
+     *
+     * @param hostName the host name to resolve
+     * @return the addresses of the host, in order of preference (not {@code null} or empty)
+     * @throws UnknownHostException if the host name cannot be resolved
+     */
+    InetAddress[] resolve(String hostName) throws UnknownHostException;
+
+    /**
+     * The resolver which uses the platform name service.
+     */
+    AddressResolver SYSTEM = new AddressResolver() {
+        public InetAddress[] resolve(final String hostName) throws UnknownHostException {
+            return InetAddress.getAllByName(hostName);
+        }
+
+        public String toString() {
+            return "system address resolver";
+        }
+    };
+}
@@ -20,7 +20,9 @@ package org.xnio;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.xnio.channels.CloseableChannel;
 import org.xnio.channels.ConnectedChannel;
 
@@ -38,11 +40,15 @@ public abstract class Connection implements CloseableChannel, ConnectedChannel {
     protected final XnioIoThread thread;
     @SuppressWarnings("unused")
     private volatile int state;
+    @SuppressWarnings("unused")
+    private volatile ChannelListener<? super Connection>[] internalCloseListeners;
 
     private static final int FLAG_READ_CLOSED           = 0b0001;
     private static final int FLAG_WRITE_CLOSED          = 0b0010;
 
     private static final AtomicIntegerFieldUpdater<Connection> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(Connection.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Connection, ChannelListener[]> internalCloseListenersUpdater = AtomicReferenceFieldUpdater.newUpdater(Connection.class, ChannelListener[].class, "internalCloseListeners");
 
     /**
      * Construct a new instance.
@@ -91,6 +97,7 @@ public abstract class Connection implements CloseableChannel, ConnectedChannel {
             try {
                 closeAction();
             } catch (Throwable ignored) {}
+            invokeInternalCloseListeners();
             invokeCloseListener();
         }
         return true;
@@ -114,6 +121,7 @@ public abstract class Connection implements CloseableChannel, ConnectedChannel {
             try {
                 closeAction();
             } catch (Throwable ignored) {}
+            invokeInternalCloseListeners();
             invokeCloseListener();
         }
         return true;
@@ -139,6 +147,7 @@ public abstract class Connection implements CloseableChannel, ConnectedChannel {
                 notifyReadClosed();
             } catch (Throwable ignored) {
             }
+            invokeInternalCloseListeners();
             invokeCloseListener();
         }
     }
@@ -177,6 +186,64 @@ public abstract class Connection implements CloseableChannel, ConnectedChannel {
 
     abstract void invokeCloseListener();
 
+    /**
+     * Add a listener which is invoked when this connection is closed, before and independently of the user's close
+     * listener.  This allows other parts of XNIO to learn of the closure without taking over the close listener.
+     *
+     * @param listener the listener to add
+     */
+    void addInternalCloseListener(final ChannelListener<? super Connection> listener) {
+        ChannelListener<? super Connection>[] oldVal, newVal;
+        do {
+            oldVal = internalCloseListeners;
+            if (oldVal == null) {
+                newVal = newListenerArray(listener);
+            } else {
+                newVal = Arrays.copyOf(oldVal, oldVal.length + 1);
+                newVal[oldVal.length] = listener;
+            }
+        } while (! internalCloseListenersUpdater.compareAndSet(this, oldVal, newVal));
+    }
+
+    /**
+     * Remove a listener which was added with {@link #addInternalCloseListener(ChannelListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    void removeInternalCloseListener(final ChannelListener<? super Connection> listener) {
+        ChannelListener<? super Connection>[] oldVal, newVal;
+        do {
+            oldVal = internalCloseListeners;
+            if (oldVal == null) {
+                return;
+            }
+            final int idx = Arrays.asList(oldVal).indexOf(listener);
+            if (idx == -1) {
+                return;
+            }
+            if (oldVal.length == 1) {
+                newVal = null;
+            } else {
+                newVal = Arrays.copyOf(oldVal, oldVal.length - 1);
+                System.arraycopy(oldVal, idx + 1, newVal, idx, newVal.length - idx);
+            }
+        } while (! internalCloseListenersUpdater.compareAndSet(this, oldVal, newVal));
+    }
+
+    @SafeVarargs
+    private static ChannelListener<? super Connection>[] newListenerArray(final ChannelListener<? super Connection>... listeners) {
+        return listeners;
+    }
+
+    private void invokeInternalCloseListeners() {
+        final ChannelListener<? super Connection>[] listeners = internalCloseListeners;
+        if (listeners != null) {
+            for (ChannelListener<? super Connection> listener : listeners) {
+                ChannelListeners.invokeChannelListener(this, listener);
+            }
+        }
+    }
+
     /**
      * The close action to perform on this connection.
      *
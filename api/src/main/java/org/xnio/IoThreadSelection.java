@@ -0,0 +1,49 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+/**
+ * The policy used by a worker to pick the I/O thread for a new connection, pipe or channel which is not bound to a
+ * particular thread.
+ *
+ * @see Options#WORKER_IO_THREAD_SELECTION
+ */
+public enum IoThreadSelection {
+    /**
+     * Pick a thread at random.
+     */
+    RANDOM,
+    /**
+     * Pick each thread in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * Pick the thread which currently owns the fewest open connections and channels.
+     */
+    LEAST_CONNECTIONS,
+    /**
+     * Pick the thread which has recently spent the least time running tasks and channel handlers.
+     */
+    LEAST_BUSY,
+    /**
+     * Pick the calling thread if it is an I/O thread of the same worker, otherwise pick a thread at random.
+     */
+    CALLER_AFFINITY,
+    ;
+}
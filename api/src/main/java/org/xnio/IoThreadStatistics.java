@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.io.Serializable;
+
+/**
+ * A point-in-time snapshot of the activity counters of an I/O thread.  All times are given in nanoseconds and all
+ * counts are cumulative since the thread was started, unless stated otherwise.
+ *
+ * @see XnioIoThread#getStatistics()
+ */
+public final class IoThreadStatistics implements Serializable {
+
+    private static final long serialVersionUID = -2578311536298428741L;
+
+    private final long selectCount;
+    private final long selectTime;
+    private final long handlerTime;
+    private final long taskTime;
+    private final long tasksExecuted;
+    private final int pendingDelayedTasks;
+    private final int registeredKeyCount;
+    private final long maxHandlerTime;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param selectCount the number of select operations performed
+     * @param selectTime the total time spent waiting in select operations
+     * @param handlerTime the total time spent running handlers for ready channels
+     * @param taskTime the total time spent running submitted tasks
+     * @param tasksExecuted the number of submitted tasks which were run
+     * @param pendingDelayedTasks the current number of scheduled tasks which are not yet due
+     * @param registeredKeyCount the current number of channels registered with the thread
+     * @param maxHandlerTime the longest time spent in a single handler invocation
+     */
+    public IoThreadStatistics(final long selectCount, final long selectTime, final long handlerTime, final long taskTime, final long tasksExecuted, final int pendingDelayedTasks, final int registeredKeyCount, final long maxHandlerTime) {
+        this.selectCount = selectCount;
+        this.selectTime = selectTime;
+        this.handlerTime = handlerTime;
+        this.taskTime = taskTime;
+        this.tasksExecuted = tasksExecuted;
+        this.pendingDelayedTasks = pendingDelayedTasks;
+        this.registeredKeyCount = registeredKeyCount;
+        this.maxHandlerTime = maxHandlerTime;
+    }
+
+    /**
+     * Get the number of select operations performed.
+     *
+     * @return the select count
+     */
+    public long getSelectCount() {
+        return selectCount;
+    }
+
+    /**
+     * Get the total time spent waiting in select operations, in nanoseconds.
+     *
+     * @return the select time
+     */
+    public long getSelectTime() {
+        return selectTime;
+    }
+
+    /**
+     * Get the total time spent running handlers for ready channels, in nanoseconds.
+     *
+     * @return the handler time
+     */
+    public long getHandlerTime() {
+        return handlerTime;
+    }
+
+    /**
+     * Get the total time spent running submitted tasks, in nanoseconds.
+     *
+     * @return the task time
+     */
+    public long getTaskTime() {
+        return taskTime;
+    }
+
+    /**
+     * Get the number of submitted tasks which were run.
+     *
+     * @return the executed task count
+     */
+    public long getTasksExecuted() {
+        return tasksExecuted;
+    }
+
+    /**
+     * Get the number of scheduled tasks which were not yet due when the snapshot was taken.
+     *
+     * @return the pending delayed task count
+     */
+    public int getPendingDelayedTasks() {
+        return pendingDelayedTasks;
+    }
+
+    /**
+     * Get the number of channels which were registered with the thread when the snapshot was taken.
+     *
+     * @return the registered key count
+     */
+    public int getRegisteredKeyCount() {
+        return registeredKeyCount;
+    }
+
+    /**
+     * Get the longest time spent in a single handler invocation, in nanoseconds.
+     *
+     * @return the maximum handler time
+     */
+    public long getMaxHandlerTime() {
+        return maxHandlerTime;
+    }
+
+    public String toString() {
+        return String.format("I/O thread statistics: %d selects (%d ns), handlers %d ns (max %d ns), %d tasks (%d ns), %d delayed tasks pending, %d keys registered",
+                Long.valueOf(selectCount), Long.valueOf(selectTime), Long.valueOf(handlerTime), Long.valueOf(maxHandlerTime),
+                Long.valueOf(tasksExecuted), Long.valueOf(taskTime), Integer.valueOf(pendingDelayedTasks), Integer.valueOf(registeredKeyCount));
+    }
+}
@@ -89,6 +89,33 @@ public final class Options {
      */
     public static final Option<Boolean> TCP_NODELAY = Option.simple(Options.class, "TCP_NODELAY", Boolean.class);
 
+    /**
+     * Configure a TCP socket to acknowledge received data immediately instead of delaying acknowledgements.  The
+     * operating system may turn quick acknowledgement off again on its own.  Only available on some platforms; on a
+     * server, it is applied to each accepted connection.
+     */
+    public static final Option<Boolean> TCP_QUICKACK = Option.simple(Options.class, "TCP_QUICKACK", Boolean.class);
+
+    /**
+     * Enable TCP Fast Open on a server socket, which lets clients send data along with the connection request.  The
+     * value is the maximum number of pending Fast Open requests.  Only available on some platforms.
+     */
+    public static final Option<Integer> TCP_FASTOPEN = Option.simple(Options.class, "TCP_FASTOPEN", Integer.class);
+
+    /**
+     * Configure a server socket to only accept a connection once data has arrived on it, waiting at most the given
+     * number of seconds.  Only available on some platforms.
+     */
+    public static final Option<Integer> TCP_DEFER_ACCEPT = Option.simple(Options.class, "TCP_DEFER_ACCEPT", Integer.class);
+
+    /**
+     * Specify the amount of time, in milliseconds, to wait for a connection attempt to one of several candidate
+     * addresses before also trying the next one.  Defaults to {@code 250}.
+     *
+     * @see XnioIoFactory#openStreamConnection(java.util.List, ChannelListener, ChannelListener, OptionMap)
+     */
+    public static final Option<Integer> CONNECT_ATTEMPT_DELAY = Option.simple(Options.class, "CONNECT_ATTEMPT_DELAY", Integer.class);
+
     /**
      * Set the multicast time-to-live field for datagram sockets.  The value type for this option is {@code int}.
      */
@@ -467,6 +494,12 @@ public final class Options {
      */
     public static final Option<Integer> WORKER_IO_THREADS = Option.simple(Options.class, "WORKER_IO_THREADS", Integer.class);
 
+    /**
+     * Specify how the worker chooses the I/O thread for a new connection, pipe or channel.  If not specified,
+     * {@link IoThreadSelection#RANDOM} is used.
+     */
+    public static final Option<IoThreadSelection> WORKER_IO_THREAD_SELECTION = Option.simple(Options.class, "WORKER_IO_THREAD_SELECTION", IoThreadSelection.class);
+
     /**
      * Specify the number of I/O threads to devote to reading for split thread channels.  If not specified, a default will be chosen to be
      * roughly half of the worker I/O threads, or the number of threads not specified for writing.
@@ -494,14 +527,11 @@ public final class Options {
     public static final Option<Boolean> WORKER_ESTABLISH_WRITING = Option.simple(Options.class, "WORKER_ESTABLISH_WRITING", Boolean.class);
 
     /**
-     * Specify the number of accept threads a single socket server should have.  Specifying more than one can result in spurious wakeups
-     * for a socket server under low connection volume, but higher throughput at high connection volume.  The minimum value
-     * is 1, and the maximum value is equal to the number of available worker threads.
-     *
-     * @deprecated This option is now ignored.  All I/O threads are used for accept, except in the case of split read/write
-     * threads, in which case only read or write threads will be used as determined by {@link #WORKER_ESTABLISH_WRITING}.
+     * Specify the number of dedicated accept threads a worker should have.  Accept threads only accept connections for the
+     * worker's stream servers and hand each accepted connection to one of the I/O threads, so that a burst of new connections
+     * does not delay I/O on established ones.  The default value of 0 means that the I/O threads accept connections themselves.
+     * This is a worker option; it has no effect when given to a server.
      */
-    @Deprecated
     public static final Option<Integer> WORKER_ACCEPT_THREADS = Option.simple(Options.class, "WORKER_ACCEPT_THREADS", Integer.class);
 
     /**
@@ -524,6 +554,60 @@ public final class Options {
      */
     public static final Option<Integer> WORKER_TASK_LIMIT = Option.simple(Options.class, "WORKER_TASK_LIMIT", Integer.class);
 
+    /**
+     * Specify the tick duration, in milliseconds, of the timer used by each I/O thread for tasks scheduled with
+     * {@link XnioExecutor#executeAfter(Runnable, long, java.util.concurrent.TimeUnit)}.  When a tick is given, tasks are
+     * kept in a timing wheel, which makes scheduling and cancelling cheap at the cost of running each task up to one
+     * tick late.  If not specified or {@code 0}, tasks are run as close to their deadline as possible.
+     */
+    public static final Option<Integer> WORKER_TIMER_TICK = Option.simple(Options.class, "WORKER_TIMER_TICK", Integer.class);
+
+    /**
+     * Specify the amount of time, in microseconds, that an I/O thread keeps polling its selector without blocking
+     * before it blocks to wait for readiness events or tasks.  Spinning trades CPU time for a lower wake-up latency and
+     * is best suited to I/O threads which have a dedicated core.  If not specified or {@code 0}, I/O threads block
+     * immediately.
+     */
+    public static final Option<Integer> WORKER_IO_SPIN_TIME = Option.simple(Options.class, "WORKER_IO_SPIN_TIME", Integer.class);
+
+    /**
+     * Specify the amount of time, in milliseconds, after which a single channel handler or task which is still
+     * running on an I/O thread is reported as slow.  A report names the handler and includes the stack of the I/O
+     * thread at the time of detection.  If not specified or {@code 0}, handlers are not watched.
+     */
+    public static final Option<Integer> WORKER_SLOW_HANDLER_THRESHOLD = Option.simple(Options.class, "WORKER_SLOW_HANDLER_THRESHOLD", Integer.class);
+
+    /**
+     * Specify whether I/O threads which have nothing to do may run tasks which were submitted to a busier I/O thread
+     * of the same worker with {@link XnioExecutor#executeStealable(Runnable)}.  Defaults to {@code false}.
+     */
+    public static final Option<Boolean> WORKER_IO_WORK_STEALING = Option.simple(Options.class, "WORKER_IO_WORK_STEALING", Boolean.class);
+
+    /**
+     * Specify whether a worker resolves the unresolved destination address of an outbound connection in its task
+     * pool, completing the connect on the I/O thread once the address is known, rather than resolving it on the I/O
+     * thread itself.  Defaults to {@code true}.
+     */
+    public static final Option<Boolean> WORKER_RESOLVE_ASYNC = Option.simple(Options.class, "WORKER_RESOLVE_ASYNC", Boolean.class);
+
+    /**
+     * Specify the resolver a worker uses to resolve unresolved destination addresses.  Defaults to
+     * {@link AddressResolver#SYSTEM}.
+     */
+    public static final Option<AddressResolver> WORKER_RESOLVER = Option.simple(Options.class, "WORKER_RESOLVER", AddressResolver.class);
+
+    /**
+     * Specify the number of seconds for which a worker caches a resolved host name.  If {@code 0}, successful
+     * resolutions are not cached.  Defaults to {@code 30}.
+     */
+    public static final Option<Integer> WORKER_RESOLVER_CACHE_TTL = Option.simple(Options.class, "WORKER_RESOLVER_CACHE_TTL", Integer.class);
+
+    /**
+     * Specify the number of seconds for which a worker caches the failure to resolve a host name.  If {@code 0},
+     * failures are not cached.  Defaults to {@code 10}.
+     */
+    public static final Option<Integer> WORKER_RESOLVER_NEGATIVE_CACHE_TTL = Option.simple(Options.class, "WORKER_RESOLVER_NEGATIVE_CACHE_TTL", Integer.class);
+
     /**
      * Specify that output should be buffered.  The exact behavior of the buffering is not specified; it may flush based
      * on buffered size or time.  An explicit {@link SuspendableWriteChannel#flush()} will still cause
@@ -531,6 +615,36 @@ public final class Options {
      */
     public static final Option<Boolean> CORK = Option.simple(Options.class, "CORK", Boolean.class);
 
+    /**
+     * Specify that small writes to a stream connection should be held and sent together in a single gathering write
+     * once the I/O thread has finished handling the current batch of events, or on an explicit flush.  Writes made
+     * from a thread other than the connection's I/O thread are only sent by an explicit flush.  Defaults to
+     * {@code false}.
+     */
+    public static final Option<Boolean> WRITE_COALESCING = Option.simple(Options.class, "WRITE_COALESCING", Boolean.class);
+
+    /**
+     * Specify that a stream connection should read ahead into a buffer of its own, sized according to the amount of
+     * data received by recent readiness events, when the application reads into a smaller buffer.  The read ready
+     * handler is called again for as long as it makes progress, until the socket has no more data or the
+     * {@link #READ_AHEAD_BUDGET} is used up.  Defaults to {@code false}.
+     */
+    public static final Option<Boolean> READ_AHEAD = Option.simple(Options.class, "READ_AHEAD", Boolean.class);
+
+    /**
+     * The number of bytes which a stream connection with {@link #READ_AHEAD} enabled may read from its socket during
+     * a single readiness event.  Defaults to 65536.
+     */
+    public static final Option<Integer> READ_AHEAD_BUDGET = Option.simple(Options.class, "READ_AHEAD_BUDGET", Integer.class);
+
+    /**
+     * The number of bytes which a stream connection may read and write during a single readiness event of its I/O
+     * thread.  Once it is used up, reads and writes transfer nothing, and the connection's handlers are called again
+     * after the tasks which are queued on the thread, so that one busy connection cannot hold up the others on the
+     * same thread.  Defaults to {@code 0}, which means that there is no limit.
+     */
+    public static final Option<Integer> IO_EVENT_BUDGET = Option.simple(Options.class, "IO_EVENT_BUDGET", Integer.class);
+
     /**
      * The high water mark for a server's connections.  Once this number of connections have been accepted, accepts
      * will be suspended for that server.
@@ -564,6 +678,46 @@ public final class Options {
      */
     public static final Option<Integer> BALANCING_CONNECTIONS = Option.simple(Options.class, "BALANCING_CONNECTIONS", Integer.class);
 
+    /**
+     * Specify whether a TCP server should open a separate listening socket for each I/O thread, all bound to the same
+     * address with {@code SO_REUSEPORT}, so that the operating system distributes incoming connections among the
+     * threads instead of waking all of them for each one.  Connection-balancing tokens are not used in this mode.  If
+     * the platform does not support {@code SO_REUSEPORT}, a single shared listening socket is used.  Defaults to
+     * {@code false}.
+     */
+    public static final Option<Boolean> REUSE_PORT = Option.simple(Options.class, "REUSE_PORT", Boolean.class);
+
+    /**
+     * Specify the maximum number of connections a server accepts on an I/O thread for each readiness event.  The
+     * accept listener is invoked repeatedly, as long as it keeps accepting connections, until this many have been
+     * accepted; further calls to {@code accept()} from the listener return {@code null} until the next readiness event.
+     * If not specified, the accept listener is invoked once per readiness event and may accept without limit.
+     */
+    public static final Option<Integer> ACCEPT_BATCH_SIZE = Option.simple(Options.class, "ACCEPT_BATCH_SIZE", Integer.class);
+
+    /**
+     * Specify how a server chooses the I/O thread which owns each accepted connection, for example
+     * {@link IoThreadSelection#LEAST_CONNECTIONS} to spread long-lived connections evenly over the threads.  If not
+     * specified, a connection stays on the I/O thread which accepted it, or, with dedicated accept threads, is placed
+     * according to {@link #WORKER_IO_THREAD_SELECTION}.
+     */
+    public static final Option<IoThreadSelection> ACCEPT_IO_THREAD_SELECTION = Option.simple(Options.class, "ACCEPT_IO_THREAD_SELECTION", IoThreadSelection.class);
+
+    /**
+     * Specify the maximum number of connections per second a server accepts.  The rate is divided among the threads
+     * which accept for the server, each of which gets at least one connection per second; a thread which runs out of
+     * budget stops accepting until it has earned enough for another connection, leaving pending connections in the
+     * listen backlog.  If not specified, the accept rate is not limited.
+     */
+    public static final Option<Integer> ACCEPT_RATE_LIMIT = Option.simple(Options.class, "ACCEPT_RATE_LIMIT", Integer.class);
+
+    /**
+     * Specify how many connections a server may accept in a burst beyond its {@link #ACCEPT_RATE_LIMIT}.  The burst is
+     * divided among the accepting threads like the rate.  If not specified, a burst of one second's worth of
+     * connections is allowed.
+     */
+    public static final Option<Integer> ACCEPT_RATE_BURST = Option.simple(Options.class, "ACCEPT_RATE_BURST", Integer.class);
+
     /**
      * The poll interval for poll based file system watchers.  Defaults to 5000ms.  Ignored on Java 7 and later.
      */
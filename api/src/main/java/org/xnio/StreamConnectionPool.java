@@ -0,0 +1,552 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+import static org.xnio._private.Messages.msg;
+
+/**
+ * A pool of idle outbound stream connections, keyed by destination and option map.  Each I/O thread of the worker has
+ * its own pool, which is only ever touched by that thread, so acquiring and releasing connections needs no locks;
+ * calls made from other threads are forwarded to the I/O thread concerned.
+ * <p>
+ * An idle connection is closed once it has been idle for longer than the maximum idle time, or as soon as it becomes
+ * readable, since that means that the peer has closed it or sent data which nobody asked for.  Connections are reused
+ * most recently released first.
+ */
+public final class StreamConnectionPool implements Closeable {
+
+    private final XnioWorker worker;
+    private final int maxIdle;
+    private final long maxIdleTime;
+    private final AtomicReferenceArray<ThreadPool> pools;
+    private volatile boolean closed;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param worker the worker whose I/O threads own the connections
+     * @param maxIdle the maximum number of idle connections kept per destination and I/O thread
+     * @param maxIdleTime the time after which an idle connection is closed
+     * @param unit the unit of {@code maxIdleTime}
+     */
+    public StreamConnectionPool(final XnioWorker worker, final int maxIdle, final long maxIdleTime, final TimeUnit unit) {
+        if (worker == null) {
+            throw msg.nullParameter("worker");
+        }
+        if (maxIdle < 0) {
+            throw msg.parameterOutOfRange("maxIdle");
+        }
+        if (maxIdleTime < 1L) {
+            throw msg.parameterOutOfRange("maxIdleTime");
+        }
+        if (unit == null) {
+            throw msg.nullParameter("unit");
+        }
+        this.worker = worker;
+        this.maxIdle = maxIdle;
+        this.maxIdleTime = Math.max(1L, unit.toMillis(maxIdleTime));
+        pools = new AtomicReferenceArray<ThreadPool>(worker.getIoThreadCount());
+    }
+
+    /**
+     * Acquire a connection to the given destination on the current I/O thread, or on an I/O thread chosen by the
+     * worker if the current thread is not one of its I/O threads.
+     *
+     * @param destination the destination
+     * @param optionMap the connection options
+     * @return the future connection
+     */
+    public IoFuture<StreamConnection> acquire(final SocketAddress destination, final OptionMap optionMap) {
+        final XnioIoThread current = XnioIoThread.currentThread();
+        return acquire(current != null && isPoolThread(current) ? current : worker.getIoThread(), destination, optionMap);
+    }
+
+    /**
+     * Acquire a connection to the given destination on the given I/O thread.  An idle connection is reused if there
+     * is one; otherwise a new connection is opened.  Once the caller is done with the connection, it should be
+     * {@linkplain #release(StreamConnection) released} back to the pool or closed.
+     *
+     * @param thread the I/O thread which is to own the connection
+     * @param destination the destination
+     * @param optionMap the connection options
+     * @return the future connection
+     */
+    public IoFuture<StreamConnection> acquire(final XnioIoThread thread, final SocketAddress destination, final OptionMap optionMap) {
+        checkThread(thread);
+        if (destination == null) {
+            throw msg.nullParameter("destination");
+        }
+        if (optionMap == null) {
+            throw msg.nullParameter("optionMap");
+        }
+        if (closed) {
+            return new FailedIoFuture<StreamConnection>(msg.connectionPoolClosed());
+        }
+        final PoolKey key = new PoolKey(destination, optionMap);
+        final FutureResult<StreamConnection> result = new FutureResult<StreamConnection>();
+        if (thread == Thread.currentThread()) {
+            final ThreadPool pool = getPool(thread);
+            final StreamConnection connection = pool.takeIdle(key);
+            if (connection != null) {
+                return new FinishedIoFuture<StreamConnection>(connection);
+            }
+            pool.open(key, result);
+        } else {
+            thread.execute(new Runnable() {
+                public void run() {
+                    final ThreadPool pool = getPool(thread);
+                    final StreamConnection connection = pool.takeIdle(key);
+                    if (connection != null) {
+                        result.setResult(connection);
+                    } else {
+                        pool.open(key, result);
+                    }
+                }
+            });
+        }
+        return result.getIoFuture();
+    }
+
+    /**
+     * Release a connection which was acquired from this pool, making it available to later callers.  The connection
+     * must not be used by the caller afterwards.  If the pool is full or closed, or the connection is not open, the
+     * connection is closed instead.
+     *
+     * @param connection the connection
+     */
+    public void release(final StreamConnection connection) {
+        final XnioIoThread thread = connection.getIoThread();
+        checkThread(thread);
+        if (thread == Thread.currentThread()) {
+            getPool(thread).release(connection);
+        } else {
+            try {
+                thread.execute(new Runnable() {
+                    public void run() {
+                        getPool(thread).release(connection);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                IoUtils.safeClose(connection);
+            }
+        }
+    }
+
+    /**
+     * Open connections to the given destination ahead of time, and keep them idle in the pool of the given thread.
+     *
+     * @param thread the I/O thread which is to own the connections
+     * @param destination the destination
+     * @param optionMap the connection options
+     * @param count the number of connections to open, which is limited by the maximum number of idle connections
+     */
+    public void prewarm(final XnioIoThread thread, final SocketAddress destination, final OptionMap optionMap, final int count) {
+        checkThread(thread);
+        if (destination == null) {
+            throw msg.nullParameter("destination");
+        }
+        if (optionMap == null) {
+            throw msg.nullParameter("optionMap");
+        }
+        final PoolKey key = new PoolKey(destination, optionMap);
+        thread.execute(new Runnable() {
+            public void run() {
+                final ThreadPool pool = getPool(thread);
+                for (int i = Math.min(count, maxIdle) - pool.idleCount(key); i > 0; i --) {
+                    pool.prewarm(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the number of times an idle connection was reused.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        long count = 0L;
+        for (int i = 0; i < pools.length(); i ++) {
+            final ThreadPool pool = pools.get(i);
+            if (pool != null) count += pool.hits;
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of times a new connection had to be opened because no idle connection was available.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        long count = 0L;
+        for (int i = 0; i < pools.length(); i ++) {
+            final ThreadPool pool = pools.get(i);
+            if (pool != null) count += pool.misses;
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of idle connections which were closed because they timed out, or were found to be closed or
+     * readable.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        long count = 0L;
+        for (int i = 0; i < pools.length(); i ++) {
+            final ThreadPool pool = pools.get(i);
+            if (pool != null) count += pool.evictions;
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of idle connections in the pool.
+     *
+     * @return the idle connection count
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (int i = 0; i < pools.length(); i ++) {
+            final ThreadPool pool = pools.get(i);
+            if (pool != null) count += pool.idle;
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of connections which are currently acquired from the pool, that is, handed out and neither
+     * released nor closed since.
+     *
+     * @return the acquired connection count
+     */
+    public int getAcquiredCount() {
+        int count = 0;
+        for (int i = 0; i < pools.length(); i ++) {
+            final ThreadPool pool = pools.get(i);
+            if (pool != null) count += pool.inUse;
+        }
+        return count;
+    }
+
+    /**
+     * Close the pool and all of its idle connections.  Connections which are currently acquired are closed when they
+     * are released.
+     */
+    public void close() {
+        closed = true;
+        for (int i = 0; i < pools.length(); i ++) {
+            final ThreadPool pool = pools.get(i);
+            if (pool != null) {
+                try {
+                    pool.thread.execute(new Runnable() {
+                        public void run() {
+                            pool.closeIdle();
+                        }
+                    });
+                } catch (RejectedExecutionException ignored) {
+                    // the thread is exiting, and its connections are closed with it
+                }
+            }
+        }
+    }
+
+    private boolean isPoolThread(final XnioIoThread thread) {
+        final int number = thread.getNumber();
+        if (thread.getWorker() != worker || number >= pools.length()) {
+            return false;
+        }
+        final ThreadPool pool = pools.get(number);
+        return pool == null || pool.thread == thread;
+    }
+
+    private void checkThread(final XnioIoThread thread) {
+        if (thread == null) {
+            throw msg.nullParameter("thread");
+        }
+        if (! isPoolThread(thread)) {
+            throw msg.notWorkerIoThread(thread, worker);
+        }
+    }
+
+    ThreadPool getPool(final XnioIoThread thread) {
+        final int number = thread.getNumber();
+        ThreadPool pool = pools.get(number);
+        if (pool == null) {
+            pool = new ThreadPool(thread);
+            if (! pools.compareAndSet(number, null, pool)) {
+                pool = pools.get(number);
+            }
+        }
+        return pool;
+    }
+
+    static final class PoolKey {
+        private final SocketAddress destination;
+        private final OptionMap optionMap;
+        private final int hashCode;
+
+        PoolKey(final SocketAddress destination, final OptionMap optionMap) {
+            this.destination = destination;
+            this.optionMap = optionMap;
+            hashCode = destination.hashCode() * 31 + optionMap.hashCode();
+        }
+
+        public boolean equals(final Object other) {
+            return other instanceof PoolKey && equals((PoolKey) other);
+        }
+
+        boolean equals(final PoolKey other) {
+            return this == other || other != null && hashCode == other.hashCode && destination.equals(other.destination) && optionMap.equals(other.optionMap);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The pool of one I/O thread.  Apart from the statistics, it is only accessed by that thread.  It listens for the
+     * closure of the connections it has handed out, so that one which is closed rather than released is forgotten.
+     */
+    final class ThreadPool implements ChannelListener<Connection> {
+        final XnioIoThread thread;
+        private final Map<PoolKey, ArrayDeque<IdleConnection>> idleConnections = new HashMap<PoolKey, ArrayDeque<IdleConnection>>();
+        private final Map<StreamConnection, PoolKey> acquired = new IdentityHashMap<StreamConnection, PoolKey>();
+
+        volatile long hits;
+        volatile long misses;
+        volatile long evictions;
+        volatile int idle;
+        volatile int inUse;
+
+        ThreadPool(final XnioIoThread thread) {
+            this.thread = thread;
+        }
+
+        StreamConnection takeIdle(final PoolKey key) {
+            final ArrayDeque<IdleConnection> deque = idleConnections.get(key);
+            IdleConnection idleConnection;
+            while (deque != null && (idleConnection = deque.pollLast()) != null) {
+                idle --;
+                idleConnection.detach();
+                final StreamConnection connection = idleConnection.connection;
+                if (connection.isOpen()) {
+                    hits ++;
+                    track(connection, key);
+                    return connection;
+                }
+                evictions ++;
+            }
+            return null;
+        }
+
+        void open(final PoolKey key, final FutureResult<StreamConnection> result) {
+            misses ++;
+            final IoFuture<StreamConnection> future = thread.openStreamConnection(key.destination, null, key.optionMap);
+            result.addCancelHandler(future);
+            future.addNotifier(new IoFuture.HandlingNotifier<StreamConnection, FutureResult<StreamConnection>>() {
+                public void handleDone(final StreamConnection connection, final FutureResult<StreamConnection> result) {
+                    acquired(connection, key);
+                    if (! result.setResult(connection)) {
+                        IoUtils.safeClose(connection);
+                    }
+                }
+
+                public void handleFailed(final IOException exception, final FutureResult<StreamConnection> result) {
+                    result.setException(exception);
+                }
+
+                public void handleCancelled(final FutureResult<StreamConnection> result) {
+                    result.setCancelled();
+                }
+            }, result);
+        }
+
+        void prewarm(final PoolKey key) {
+            thread.openStreamConnection(key.destination, null, key.optionMap).addNotifier(new IoFuture.HandlingNotifier<StreamConnection, PoolKey>() {
+                public void handleDone(final StreamConnection connection, final PoolKey key) {
+                    acquired(connection, key);
+                    release(connection);
+                }
+            }, key);
+        }
+
+        void acquired(final StreamConnection connection, final PoolKey key) {
+            if (thread == Thread.currentThread()) {
+                track(connection, key);
+            } else {
+                // completed elsewhere, e.g. on failure to even start connecting
+                thread.execute(new Runnable() {
+                    public void run() {
+                        track(connection, key);
+                    }
+                });
+            }
+        }
+
+        private void track(final StreamConnection connection, final PoolKey key) {
+            acquired.put(connection, key);
+            inUse = acquired.size();
+            connection.addInternalCloseListener(this);
+            if (! connection.isOpen()) {
+                // closed before the listener was in place
+                untrack(connection);
+            }
+        }
+
+        private PoolKey untrack(final Connection connection) {
+            final PoolKey key = acquired.remove(connection);
+            if (key != null) {
+                connection.removeInternalCloseListener(this);
+                inUse = acquired.size();
+            }
+            return key;
+        }
+
+        public void handleEvent(final Connection connection) {
+            // an acquired connection was closed instead of being released
+            if (thread == Thread.currentThread()) {
+                untrack(connection);
+            } else {
+                try {
+                    thread.execute(new Runnable() {
+                        public void run() {
+                            untrack(connection);
+                        }
+                    });
+                } catch (RejectedExecutionException ignored) {
+                    // the thread is exiting, and the pool with it
+                }
+            }
+        }
+
+        void release(final StreamConnection connection) {
+            final PoolKey key = untrack(connection);
+            if (key == null || closed || ! connection.isOpen()) {
+                IoUtils.safeClose(connection);
+                return;
+            }
+            ArrayDeque<IdleConnection> deque = idleConnections.get(key);
+            if (deque == null) {
+                idleConnections.put(key, deque = new ArrayDeque<IdleConnection>());
+            }
+            if (deque.size() >= maxIdle) {
+                IoUtils.safeClose(connection);
+                return;
+            }
+            final IdleConnection idleConnection = new IdleConnection(this, key, connection);
+            deque.addLast(idleConnection);
+            idle ++;
+            idleConnection.attach();
+        }
+
+        int idleCount(final PoolKey key) {
+            final ArrayDeque<IdleConnection> deque = idleConnections.get(key);
+            return deque == null ? 0 : deque.size();
+        }
+
+        void evict(final IdleConnection idleConnection) {
+            final ArrayDeque<IdleConnection> deque = idleConnections.get(idleConnection.key);
+            if (deque != null && deque.remove(idleConnection)) {
+                idle --;
+                evictions ++;
+                idleConnection.detach();
+                IoUtils.safeClose(idleConnection.connection);
+            }
+        }
+
+        void closeIdle() {
+            for (ArrayDeque<IdleConnection> deque : idleConnections.values()) {
+                IdleConnection idleConnection;
+                while ((idleConnection = deque.poll()) != null) {
+                    idle --;
+                    idleConnection.detach();
+                    IoUtils.safeClose(idleConnection.connection);
+                }
+            }
+            idleConnections.clear();
+        }
+    }
+
+    /**
+     * An idle connection.  It watches its connection for read readiness, and runs as the idle timeout task.
+     */
+    final class IdleConnection implements Runnable, ChannelListener<ConduitStreamSourceChannel> {
+        private final ThreadPool pool;
+        final PoolKey key;
+        final StreamConnection connection;
+        private XnioExecutor.Key timeoutKey;
+
+        IdleConnection(final ThreadPool pool, final PoolKey key, final StreamConnection connection) {
+            this.pool = pool;
+            this.key = key;
+            this.connection = connection;
+        }
+
+        void attach() {
+            final ConduitStreamSourceChannel sourceChannel = connection.getSourceChannel();
+            sourceChannel.setReadListener(this);
+            sourceChannel.resumeReads();
+            timeoutKey = pool.thread.executeAfter(this, maxIdleTime, TimeUnit.MILLISECONDS);
+        }
+
+        void detach() {
+            final ConduitStreamSourceChannel sourceChannel = connection.getSourceChannel();
+            sourceChannel.suspendReads();
+            sourceChannel.setReadListener(null);
+            timeoutKey.remove();
+        }
+
+        public void run() {
+            // idle for too long
+            pool.evict(this);
+        }
+
+        public void handleEvent(final ConduitStreamSourceChannel channel) {
+            // an idle connection should have nothing to read
+            final int res;
+            try {
+                res = channel.read(ByteBuffer.allocate(1));
+            } catch (IOException e) {
+                pool.evict(this);
+                return;
+            }
+            if (res != 0) {
+                pool.evict(this);
+            }
+        }
+    }
+}
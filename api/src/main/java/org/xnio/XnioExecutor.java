@@ -37,6 +37,16 @@ public interface XnioExecutor extends Executor {
      */
     void execute(Runnable command);
 
+    /**
+     * Execute a task which does not need to run on this particular executor.  Executors which share work with
+     * other executors (for example the I/O threads of a worker with work stealing enabled) may run the task on any
+     * of them; tasks submitted in this way are not ordered with respect to one another or to tasks submitted with
+     * {@link #execute(Runnable)}.  Other executors run the task as if by {@code execute(command)}.
+     *
+     * @param command the command to run
+     */
+    void executeStealable(Runnable command);
+
     /**
      * Execute a command after a period of time.  At least the amount of time given in {@code time} will
      * have elapsed when the task is run.  The returned key may be used to cancel the task before it runs.
@@ -1,7 +1,9 @@
 package org.xnio;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.List;
 import org.xnio.channels.BoundChannel;
 import org.xnio.channels.StreamChannel;
 import org.xnio.channels.StreamSinkChannel;
@@ -53,6 +55,21 @@ public interface XnioIoFactory {
      */
     IoFuture<StreamConnection> openStreamConnection(SocketAddress bindAddress, SocketAddress destination, ChannelListener<? super StreamConnection> openListener, ChannelListener<? super BoundChannel> bindListener, OptionMap optionMap);
 
+    /**
+     * Connect to a TCP server which may be reached at any of several addresses, such as all of the addresses of a
+     * host name.  Connection attempts are started in the given order, each one {@link Options#CONNECT_ATTEMPT_DELAY}
+     * after the previous one or as soon as the previous one fails, and all run at once on the same thread.  The first
+     * attempt to succeed completes the operation and the others are cancelled.  If an open listener is used, the
+     * channel should not be accessed via the returned {@code IoFuture}, and vice-versa.
+     *
+     * @param destinations the candidate destination addresses, in order of preference (must not be empty)
+     * @param openListener the listener which will be notified when the channel is open, or {@code null} for none
+     * @param bindListener the listener which will be notified when each attempted channel is bound, or {@code null} for none
+     * @param optionMap the option map
+     * @return the future result of this operation
+     */
+    IoFuture<StreamConnection> openStreamConnection(List<? extends InetSocketAddress> destinations, ChannelListener<? super StreamConnection> openListener, ChannelListener<? super BoundChannel> bindListener, OptionMap optionMap);
+
     /**
      * Accept a stream connection at a destination address.  If a wildcard address is specified, then a destination address
      * is chosen in a manner specific to the OS and/or channel type.
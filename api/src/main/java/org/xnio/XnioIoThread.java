@@ -21,6 +21,7 @@ package org.xnio;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.List;
 import org.xnio.channels.AssembledStreamChannel;
 import org.xnio.channels.BoundChannel;
 import org.xnio.channels.StreamChannel;
@@ -139,6 +140,27 @@ public abstract class XnioIoThread extends Thread implements XnioExecutor, XnioI
         return worker;
     }
 
+    /**
+     * Execute a task which may be run by any I/O thread of this thread's worker.  By default the task is simply
+     * run on this thread.
+     *
+     * @param command the command to run
+     */
+    public void executeStealable(final Runnable command) {
+        execute(command);
+    }
+
+    /**
+     * Get a snapshot of the activity counters of this thread.  The values are read without synchronization and may
+     * be slightly out of date with respect to each other.
+     *
+     * @return the statistics snapshot
+     * @throws UnsupportedOperationException if this provider does not maintain I/O thread statistics
+     */
+    public IoThreadStatistics getStatistics() {
+        throw msg.unsupported("getStatistics");
+    }
+
     public IoFuture<StreamConnection> acceptStreamConnection(SocketAddress destination, ChannelListener<? super StreamConnection> openListener, ChannelListener<? super BoundChannel> bindListener, OptionMap optionMap) {
         if (destination == null) {
             throw msg.nullParameter("destination");
@@ -261,6 +283,24 @@ public abstract class XnioIoThread extends Thread implements XnioExecutor, XnioI
         }
     }
 
+    public IoFuture<StreamConnection> openStreamConnection(List<? extends InetSocketAddress> destinations, ChannelListener<? super StreamConnection> openListener, ChannelListener<? super BoundChannel> bindListener, OptionMap optionMap) {
+        if (destinations == null) {
+            throw msg.nullParameter("destinations");
+        }
+        if (destinations.isEmpty()) {
+            throw msg.parameterOutOfRange("destinations");
+        }
+        for (InetSocketAddress destination : destinations) {
+            if (destination == null) {
+                throw msg.nullParameter("destination");
+            }
+        }
+        if (destinations.size() == 1) {
+            return openTcpStreamConnection(Xnio.ANY_INET_ADDRESS, destinations.get(0), openListener, bindListener, optionMap);
+        }
+        return openTcpStreamConnection(Xnio.ANY_INET_ADDRESS, destinations, openListener, bindListener, optionMap);
+    }
+
     /**
      * Implementation helper method to connect to a TCP server.
      *
@@ -275,6 +315,20 @@ public abstract class XnioIoThread extends Thread implements XnioExecutor, XnioI
         throw msg.unsupported("openTcpStreamConnection");
     }
 
+    /**
+     * Implementation helper method to connect to a TCP server which may be reached at any of several addresses.
+     *
+     * @param bindAddress the bind address
+     * @param destinationAddresses the candidate destination addresses, in order of preference
+     * @param openListener the listener which will be notified when the channel is open, or {@code null} for none
+     * @param bindListener the listener which will be notified when each attempted channel is bound, or {@code null} for none
+     * @param optionMap the option map
+     * @return the future result of this operation
+     */
+    protected IoFuture<StreamConnection> openTcpStreamConnection(InetSocketAddress bindAddress, List<? extends InetSocketAddress> destinationAddresses, ChannelListener<? super StreamConnection> openListener, ChannelListener<? super BoundChannel> bindListener, OptionMap optionMap) {
+        throw msg.unsupported("openTcpStreamConnection");
+    }
+
     /**
      * Implementation helper method to connect to a local (UNIX domain) server.
      *
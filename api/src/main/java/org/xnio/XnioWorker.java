@@ -346,6 +346,10 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
         return chooseThread().openStreamConnection(bindAddress, destination, openListener, bindListener, optionMap);
     }
 
+    public IoFuture<StreamConnection> openStreamConnection(List<? extends InetSocketAddress> destinations, ChannelListener<? super StreamConnection> openListener, ChannelListener<? super BoundChannel> bindListener, OptionMap optionMap) {
+        return chooseThread().openStreamConnection(destinations, openListener, bindListener, optionMap);
+    }
+
     // Acceptors
 
     /**
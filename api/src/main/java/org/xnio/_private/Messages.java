@@ -41,6 +41,7 @@ import org.jboss.logging.annotations.LogMessage;
 import org.jboss.logging.annotations.Message;
 import org.jboss.logging.annotations.MessageLogger;
 import org.xnio.IoFuture;
+import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.channels.ConcurrentStreamChannelAccessException;
 import org.xnio.channels.ConnectedChannel;
@@ -190,6 +191,12 @@ public interface Messages extends BasicLogger {
 
     // id = 39 - Option value range
 
+    @Message(id = 40, value = "Thread %s is not an I/O thread of worker %s")
+    IllegalArgumentException notWorkerIoThread(Thread thread, XnioWorker worker);
+
+    @Message(id = 41, value = "Connection pool is closed")
+    IOException connectionPoolClosed();
+
     // HTTP upgrade
 
     @Message(id = 100, value = "'https' URL scheme chosen but no SSL provider given")
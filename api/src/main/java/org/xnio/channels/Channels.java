@@ -18,11 +18,15 @@
 
 package org.xnio.channels;
 
+import static org.xnio._private.Messages.msg;
+
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOError;
 import java.io.InterruptedIOException;
 import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -37,6 +41,8 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.ScatteringByteChannel;
 import java.util.concurrent.TimeUnit;
 import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
+import org.xnio.IoFuture;
 import org.xnio.Option;
 import org.xnio.XnioIoThread;
 
@@ -526,6 +532,148 @@ public final class Channels {
         }
     }
 
+    /**
+     * The default number of bytes which {@link #sendFile(StreamSinkChannel, FileChannel, long, long)} sends per write
+     * notification.
+     */
+    private static final long DEFAULT_SEND_FILE_CHUNK = 262144L;
+
+    /**
+     * Send a region of a file to a channel asynchronously, in chunks of at most 256 KiB per write notification.
+     *
+     * @param channel the destination channel
+     * @param source the source file channel
+     * @param position the start position in the source file
+     * @param count the number of bytes to send
+     * @param <C> the channel type
+     * @return the future result of the send
+     * @see #sendFile(StreamSinkChannel, FileChannel, long, long, long)
+     */
+    public static <C extends StreamSinkChannel & WriteListenerSettable<C> & CloseListenerSettable<C>> FileSendFuture sendFile(C channel, FileChannel source, long position, long count) {
+        return sendFile(channel, source, position, count, DEFAULT_SEND_FILE_CHUNK);
+    }
+
+    /**
+     * Send a region of a file to a channel asynchronously.  Each write notification of the channel sends at most one
+     * chunk of the region by way of {@link StreamSinkChannel#transferFrom(FileChannel, long, long)}, which avoids
+     * copying the file data where the channel supports it; between chunks, the channel's thread is free to serve other
+     * channels.
+     * <p>
+     * The channel's write and close listeners are replaced for the duration of the send.  Once the send is complete,
+     * has failed, or was cancelled, writes are suspended and the original listeners are restored before the returned
+     * future is notified.  If the channel is closed first, the future fails with a {@link ClosedChannelException}.
+     *
+     * @param channel the destination channel
+     * @param source the source file channel
+     * @param position the start position in the source file
+     * @param count the number of bytes to send
+     * @param chunkSize the largest number of bytes to send per write notification
+     * @param <C> the channel type
+     * @return the future result of the send
+     */
+    public static <C extends StreamSinkChannel & WriteListenerSettable<C> & CloseListenerSettable<C>> FileSendFuture sendFile(C channel, FileChannel source, long position, long count, long chunkSize) {
+        if (channel == null) {
+            throw msg.nullParameter("channel");
+        }
+        if (source == null) {
+            throw msg.nullParameter("source");
+        }
+        if (position < 0L) {
+            throw msg.parameterOutOfRange("position");
+        }
+        if (count < 0L) {
+            throw msg.parameterOutOfRange("count");
+        }
+        if (chunkSize < 1L) {
+            throw msg.parameterOutOfRange("chunkSize");
+        }
+        final FileSendFuture future = new FileSendFuture(channel, count);
+        if (count == 0L) {
+            future.complete();
+            return future;
+        }
+        final FileSender<C> sender = new FileSender<C>(channel, future, source, position, count, chunkSize, channel.getWriteListener(), channel.getCloseListener());
+        future.setSender(sender);
+        channel.setCloseListener(sender.closeListener);
+        channel.setWriteListener(sender);
+        channel.resumeWrites();
+        return future;
+    }
+
+    private static final class FileSender<C extends StreamSinkChannel & WriteListenerSettable<C> & CloseListenerSettable<C>> implements ChannelListener<C>, Runnable {
+        private final C channel;
+        private final FileSendFuture future;
+        private final FileChannel source;
+        private final long chunkSize;
+        private final ChannelListener<? super C> writeListener;
+        private final ChannelListener<? super C> originalCloseListener;
+        private final ChannelListener<C> closeListener;
+        private long position;
+        private long remaining;
+
+        FileSender(final C channel, final FileSendFuture future, final FileChannel source, final long position, final long count, final long chunkSize, final ChannelListener<? super C> writeListener, final ChannelListener<? super C> closeListener) {
+            this.channel = channel;
+            this.future = future;
+            this.source = source;
+            this.position = position;
+            this.remaining = count;
+            this.chunkSize = chunkSize;
+            this.writeListener = writeListener;
+            originalCloseListener = closeListener;
+            this.closeListener = new ChannelListener<C>() {
+                public void handleEvent(final C channel) {
+                    future.fail(new ClosedChannelException());
+                    ChannelListeners.invokeChannelListener(channel, originalCloseListener);
+                }
+            };
+        }
+
+        public void handleEvent(final C channel) {
+            if (future.getStatus() != IoFuture.Status.WAITING) {
+                return;
+            }
+            if (future.isCancelRequested()) {
+                finish(channel);
+                future.cancelled();
+                return;
+            }
+            try {
+                final long res = channel.transferFrom(source, position, Math.min(remaining, chunkSize));
+                if (res > 0L) {
+                    position += res;
+                    remaining -= res;
+                    future.sent(res);
+                } else if (position >= source.size()) {
+                    throw new EOFException();
+                }
+            } catch (IOException e) {
+                finish(channel);
+                future.fail(e);
+                return;
+            }
+            if (remaining == 0L) {
+                finish(channel);
+                future.complete();
+            }
+            // otherwise the next chunk goes with the next write notification
+        }
+
+        public void run() {
+            // run on the channel's thread, like a write notification
+            handleEvent(channel);
+        }
+
+        private void finish(final C channel) {
+            channel.suspendWrites();
+            channel.setWriteListener(writeListener);
+            channel.setCloseListener(originalCloseListener);
+        }
+
+        public String toString() {
+            return "File sender (" + source + ")";
+        }
+    }
+
     /**
      * Transfer bytes between two channels efficiently, blocking if necessary.
      *
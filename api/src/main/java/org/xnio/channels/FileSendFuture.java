@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.channels;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.xnio.AbstractIoFuture;
+import org.xnio.ClosedWorkerException;
+import org.xnio.IoFuture;
+
+/**
+ * The future result of an asynchronous file send, which is the number of bytes sent.  The progress of the send may be
+ * followed while it is under way.
+ *
+ * @see Channels#sendFile(StreamSinkChannel, java.nio.channels.FileChannel, long, long, long)
+ */
+public final class FileSendFuture extends AbstractIoFuture<Long> {
+
+    private final SuspendableWriteChannel channel;
+    private final long count;
+    private volatile long bytesSent;
+    private volatile boolean cancelRequested;
+    private volatile Runnable sender;
+
+    FileSendFuture(final SuspendableWriteChannel channel, final long count) {
+        this.channel = channel;
+        this.count = count;
+    }
+
+    /**
+     * Get the number of bytes to send.
+     *
+     * @return the number of bytes to send
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of bytes which were sent so far.
+     *
+     * @return the number of bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Cancel the send.  The send stops on the channel's thread; bytes which were already sent remain sent.  If that
+     * thread is no longer running, the send fails instead.
+     *
+     * @return this future
+     */
+    public IoFuture<Long> cancel() {
+        if (getStatus() == Status.WAITING) {
+            cancelRequested = true;
+            // deliver a write notification even if the channel is not writable
+            final Runnable sender = this.sender;
+            if (sender != null) try {
+                channel.getIoThread().execute(sender);
+            } catch (RejectedExecutionException e) {
+                // the thread is exiting, so no notification will come
+                setException(new ClosedWorkerException());
+            }
+        }
+        return this;
+    }
+
+    void setSender(final Runnable sender) {
+        this.sender = sender;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void sent(final long bytes) {
+        bytesSent += bytes;
+    }
+
+    boolean complete() {
+        return setResult(Long.valueOf(bytesSent));
+    }
+
+    boolean fail(final IOException exception) {
+        return setException(exception);
+    }
+
+    boolean cancelled() {
+        return setCancelled();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.management;
+
+/**
+ * The management interface of a single I/O thread of a worker.  All times are given in nanoseconds.
+ */
+public interface XnioIoThreadMXBean {
+
+    /**
+     * Get the name of the provider.
+     *
+     * @return the name of the provider
+     */
+    String getProviderName();
+
+    /**
+     * Get the worker's name.
+     *
+     * @return the worker's name
+     */
+    String getWorkerName();
+
+    /**
+     * Get the thread's name.
+     *
+     * @return the thread's name
+     */
+    String getName();
+
+    /**
+     * Get the number of select operations performed.
+     *
+     * @return the select count
+     */
+    long getSelectCount();
+
+    /**
+     * Get the total time spent waiting in select operations.
+     *
+     * @return the select time
+     */
+    long getSelectTime();
+
+    /**
+     * Get the total time spent running handlers for ready channels.
+     *
+     * @return the handler time
+     */
+    long getHandlerTime();
+
+    /**
+     * Get the total time spent running submitted tasks.
+     *
+     * @return the task time
+     */
+    long getTaskTime();
+
+    /**
+     * Get the number of submitted tasks which were run.
+     *
+     * @return the executed task count
+     */
+    long getTasksExecuted();
+
+    /**
+     * Get an estimate of the number of scheduled tasks which are not yet due.
+     *
+     * @return the pending delayed task count
+     */
+    int getPendingDelayedTasks();
+
+    /**
+     * Get an estimate of the number of channels registered with the thread.
+     *
+     * @return the registered key count
+     */
+    int getRegisteredKeyCount();
+
+    /**
+     * Get the longest time spent in a single handler invocation.
+     *
+     * @return the maximum handler time
+     */
+    long getMaxHandlerTime();
+
+    /**
+     * Get an estimate of the number of open connections owned by the thread.
+     *
+     * @return the connection count
+     */
+    int getConnectionCount();
+
+    /**
+     * Get the number of channel handlers or tasks which were reported for running for longer than the slow handler
+     * threshold.
+     *
+     * @return the slow handler count
+     */
+    long getSlowHandlerCount();
+}
@@ -65,4 +65,57 @@ public interface XnioServerMXBean {
      * @return the connection limit low-water mark
      */
     int getConnectionLimitLowWater();
+
+    /**
+     * Get the number of connections which have been accepted.
+     *
+     * @return the accepted connection count
+     */
+    long getAcceptCount();
+
+    /**
+     * Get the number of times an I/O thread was notified that connections were ready to be accepted.  The ratio of
+     * {@link #getAcceptCount()} to this value gives the average number of connections accepted per wakeup.
+     *
+     * @return the accept wakeup count
+     */
+    long getAcceptWakeupCount();
+
+    /**
+     * Get the largest number of connections accepted by an I/O thread in a single wakeup.
+     *
+     * @return the maximum number of accepts per wakeup
+     */
+    int getMaxAcceptsPerWakeup();
+
+    /**
+     * Get the number of connections accepted per second, measured over roughly the last second.
+     *
+     * @return the current accept rate
+     */
+    long getAcceptRate();
+
+    /**
+     * Get the total time for which I/O threads stopped accepting because the accept rate limit was reached.  Time is
+     * summed over all accepting threads.
+     *
+     * @return the throttled time in milliseconds
+     */
+    long getAcceptThrottledTime();
+
+    /**
+     * Get the number of times an attempt to accept a connection was refused because the server had reached its
+     * connection limit or accept rate limit.
+     *
+     * @return the rejected accept count
+     */
+    long getRejectedAcceptCount();
+
+    /**
+     * Get the number of accepted connections which were timed out because they went without reading or writing for
+     * longer than their read or write timeout.
+     *
+     * @return the timed out connection count
+     */
+    long getTimedOutConnectionCount();
 }
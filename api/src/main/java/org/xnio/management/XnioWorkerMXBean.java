@@ -71,4 +71,28 @@ public interface XnioWorkerMXBean {
      * @return the task count estimate
      */
     int getWorkerQueueSize();
+
+    /**
+     * Get the number of selector wakeups which were skipped by the I/O threads because a wakeup was already pending
+     * for the current select cycle.
+     *
+     * @return the suppressed wakeup count
+     */
+    long getSuppressedWakeupCount();
+
+    /**
+     * Get the number of times an I/O thread has replaced its selector because it kept returning early without any
+     * ready keys.
+     *
+     * @return the selector rebuild count
+     */
+    long getSelectorRebuildCount();
+
+    /**
+     * Get the number of channel handlers or tasks which were reported for running on an I/O thread for longer than
+     * the slow handler threshold.
+     *
+     * @return the slow handler count
+     */
+    long getSlowHandlerCount();
 }
@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.xnio.Cancellable;
+import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
+import org.xnio.ClosedWorkerException;
+import org.xnio.FutureResult;
+import org.xnio.IoFuture;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.XnioExecutor;
+import org.xnio.channels.BoundChannel;
+
+import static java.lang.Thread.currentThread;
+import static org.xnio.IoUtils.safeClose;
+
+/**
+ * A race between staggered connection attempts to several addresses of the same server.  Attempts are started in
+ * order, each one after a delay or as soon as the previous one fails, and the first to connect wins.  Everything but
+ * cancellation happens on the owning thread.
+ */
+final class ConnectRace implements Runnable, Cancellable {
+
+    private final WorkerThread thread;
+    private final InetSocketAddress bindAddress;
+    private final List<? extends InetSocketAddress> destinations;
+    private final ChannelListener<? super StreamConnection> openListener;
+    private final ChannelListener<? super BoundChannel> bindListener;
+    private final OptionMap optionMap;
+    private final long delay;
+    private final FutureResult<StreamConnection> futureResult;
+    private final IoFuture<StreamConnection>[] attempts;
+    private final Runnable cancelTask;
+    private final IoFuture.HandlingNotifier<StreamConnection, Integer> attemptNotifier;
+    private int started;
+    private int failed;
+    private XnioExecutor.Key delayKey;
+
+    @SuppressWarnings("unchecked")
+    ConnectRace(final WorkerThread thread, final InetSocketAddress bindAddress, final List<? extends InetSocketAddress> destinations, final ChannelListener<? super StreamConnection> openListener, final ChannelListener<? super BoundChannel> bindListener, final OptionMap optionMap, final long delay) {
+        this.thread = thread;
+        this.bindAddress = bindAddress;
+        this.destinations = destinations;
+        this.openListener = openListener;
+        this.bindListener = bindListener;
+        this.optionMap = optionMap;
+        this.delay = delay;
+        futureResult = new FutureResult<StreamConnection>(thread);
+        attempts = new IoFuture[destinations.size()];
+        cancelTask = new Runnable() {
+            public void run() {
+                cancelAttempts(-1);
+            }
+        };
+        attemptNotifier = new IoFuture.HandlingNotifier<StreamConnection, Integer>() {
+            public void handleDone(final StreamConnection connection, final Integer index) {
+                connected(connection, index.intValue());
+            }
+
+            public void handleFailed(final IOException exception, final Integer index) {
+                attemptFailed(exception);
+            }
+        };
+    }
+
+    /**
+     * Interleave the addresses of a host by address family, starting with the family of the first address, so that a
+     * family which is unreachable does not hold up every attempt.
+     *
+     * @param addresses the addresses, in order of preference
+     * @param port the destination port
+     * @return the destination addresses
+     */
+    static List<InetSocketAddress> interleave(final InetAddress[] addresses, final int port) {
+        final List<InetSocketAddress> first = new ArrayList<InetSocketAddress>(addresses.length);
+        final List<InetSocketAddress> second = new ArrayList<InetSocketAddress>(addresses.length);
+        final boolean firstIsV6 = addresses[0] instanceof Inet6Address;
+        for (InetAddress address : addresses) {
+            ((address instanceof Inet6Address) == firstIsV6 ? first : second).add(new InetSocketAddress(address, port));
+        }
+        final List<InetSocketAddress> destinations = new ArrayList<InetSocketAddress>(addresses.length);
+        final int max = Math.max(first.size(), second.size());
+        for (int i = 0; i < max; i ++) {
+            if (i < first.size()) destinations.add(first.get(i));
+            if (i < second.size()) destinations.add(second.get(i));
+        }
+        return destinations;
+    }
+
+    /**
+     * Start the race.
+     *
+     * @return the future result of the race
+     */
+    IoFuture<StreamConnection> start() {
+        futureResult.addCancelHandler(this);
+        if (currentThread() == thread) {
+            run();
+        } else {
+            try {
+                thread.execute(this);
+            } catch (RejectedExecutionException e) {
+                futureResult.setException(new ClosedWorkerException(e));
+            }
+        }
+        return futureResult.getIoFuture();
+    }
+
+    /**
+     * Start the next connection attempt.  Must be called on the owning thread.
+     */
+    public void run() {
+        assert currentThread() == thread;
+        delayKey = null;
+        if (futureResult.getIoFuture().getStatus() != IoFuture.Status.WAITING || started == attempts.length) {
+            return;
+        }
+        final int index = started ++;
+        final IoFuture<StreamConnection> attempt = thread.openTcpStreamConnection(bindAddress, destinations.get(index), null, bindListener, optionMap);
+        attempts[index] = attempt;
+        if (started < attempts.length && attempt.getStatus() == IoFuture.Status.WAITING) {
+            try {
+                delayKey = thread.executeAfter(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // the thread is exiting; the attempt will fail
+            }
+        }
+        attempt.addNotifier(attemptNotifier, Integer.valueOf(index));
+    }
+
+    private void connected(final StreamConnection connection, final int index) {
+        if (futureResult.setResult(connection)) {
+            cancelAttempts(index);
+            thread.execute(ChannelListeners.getChannelListenerTask(connection, openListener));
+        } else {
+            safeClose(connection);
+        }
+    }
+
+    private void attemptFailed(final IOException exception) {
+        if (++ failed == attempts.length) {
+            futureResult.setException(exception);
+        } else if (started == failed) {
+            // nothing is in progress, so do not wait to start the next attempt
+            if (delayKey != null) {
+                delayKey.remove();
+            }
+            run();
+        }
+    }
+
+    private void cancelAttempts(final int winner) {
+        if (delayKey != null) {
+            delayKey.remove();
+            delayKey = null;
+        }
+        for (int i = 0; i < started; i ++) {
+            if (i != winner) {
+                attempts[i].cancel();
+            }
+        }
+    }
+
+    public Cancellable cancel() {
+        if (futureResult.setCancelled()) {
+            if (currentThread() == thread) {
+                cancelTask.run();
+            } else {
+                try {
+                    thread.execute(cancelTask);
+                } catch (RejectedExecutionException ignored) {
+                    // the thread is exiting and will close the attempts
+                }
+            }
+        }
+        return this;
+    }
+}
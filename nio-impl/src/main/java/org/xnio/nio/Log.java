@@ -23,6 +23,7 @@ import static org.jboss.logging.annotations.Transform.TransformType.*;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.RejectedExecutionException;
 
@@ -125,6 +126,18 @@ interface Log extends BasicLogger {
     @Message(id = 8000, value = "Received an I/O error on selection: %s")
     void selectionError(IOException e);
 
+    @LogMessage(level = WARN)
+    @Message(id = 8001, value = "Selector %s returned early with no ready keys %d times in a row; rebuilding it")
+    void selectorSpinning(Selector selector, int count);
+
+    @LogMessage(level = WARN)
+    @Message(id = 8002, value = "Failed to open a replacement selector")
+    void selectorRebuildFailed(@Cause IOException e);
+
+    @LogMessage(level = WARN)
+    @Message(id = 8003, value = "Handler %s has been running on I/O thread \"%s\" for %d ms")
+    void slowHandler(@Cause Throwable stack, String handler, String threadName, long millis);
+
     // Trace
 
     @LogMessage(level = TRACE)
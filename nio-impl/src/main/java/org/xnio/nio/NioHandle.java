@@ -29,7 +29,7 @@ import static org.xnio.Bits.allAreSet;
  */
 abstract class NioHandle {
     private final WorkerThread workerThread;
-    private final SelectionKey selectionKey;
+    private volatile SelectionKey selectionKey;
 
     protected NioHandle(final WorkerThread workerThread, final SelectionKey selectionKey) {
         this.workerThread = workerThread;
@@ -37,11 +37,16 @@ abstract class NioHandle {
     }
 
     void resume(final int ops) {
-        try {
-            if (! allAreSet(selectionKey.interestOps(), ops)) {
-                workerThread.setOps(selectionKey, ops);
-            }
-        } catch (CancelledKeyException ignored) {}
+        SelectionKey selectionKey;
+        do {
+            selectionKey = this.selectionKey;
+            try {
+                if (! allAreSet(selectionKey.interestOps(), ops)) {
+                    workerThread.setOps(selectionKey, ops);
+                }
+            } catch (CancelledKeyException ignored) {}
+            // if the selector was rebuilt in the meantime, the change may have been made to the discarded key
+        } while (selectionKey != this.selectionKey);
     }
 
     void wakeup(final int ops) {
@@ -50,19 +55,19 @@ abstract class NioHandle {
                 handleReady(ops);
             }
         });
-        try {
-            if (! allAreSet(selectionKey.interestOps(), ops)) {
-                workerThread.setOps(selectionKey, ops);
-            }
-        } catch (CancelledKeyException ignored) {}
+        resume(ops);
     }
 
     void suspend(final int ops) {
-        try {
-            if (! allAreClear(selectionKey.interestOps(), ops)) {
-                workerThread.clearOps(selectionKey, ops);
-            }
-        } catch (CancelledKeyException ignored) {}
+        SelectionKey selectionKey;
+        do {
+            selectionKey = this.selectionKey;
+            try {
+                if (! allAreClear(selectionKey.interestOps(), ops)) {
+                    workerThread.clearOps(selectionKey, ops);
+                }
+            } catch (CancelledKeyException ignored) {}
+        } while (selectionKey != this.selectionKey);
     }
 
     boolean isResumed(final int ops) {
@@ -86,4 +91,24 @@ abstract class NioHandle {
     SelectionKey getSelectionKey() {
         return selectionKey;
     }
+
+    void setSelectionKey(final SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    /**
+     * Attach this handle to its selection key.  If the thread's selector was rebuilt after the key was obtained, the
+     * handle is attached to (and switched over to) the key which replaced it.
+     */
+    void attach() {
+        final SelectionKey selectionKey = this.selectionKey;
+        selectionKey.attach(this);
+        if (! selectionKey.isValid()) {
+            final SelectionKey newKey = selectionKey.channel().keyFor(workerThread.getSelector());
+            if (newKey != null) {
+                newKey.attach(this);
+                this.selectionKey = newKey;
+            }
+        }
+    }
 }
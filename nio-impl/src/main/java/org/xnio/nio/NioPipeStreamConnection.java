@@ -42,7 +42,7 @@ final class NioPipeStreamConnection extends AbstractNioStreamConnection {
         super(workerThread);
         if (sourceKey != null) {
             setSourceConduit(sourceConduit = new NioPipeSourceConduit(workerThread, sourceKey, this));
-            sourceKey.attach(sourceConduit);
+            sourceConduit.attach();
             sourceChannel = (Pipe.SourceChannel) sourceKey.channel();
         } else {
             sourceConduit = null;
@@ -50,12 +50,13 @@ final class NioPipeStreamConnection extends AbstractNioStreamConnection {
         }
         if (sinkKey != null) {
             setSinkConduit(sinkConduit = new NioPipeSinkConduit(workerThread, sinkKey, this));
-            sinkKey.attach(sinkConduit);
+            sinkConduit.attach();
             sinkChannel = (Pipe.SinkChannel) sinkKey.channel();
         } else {
             sinkConduit = null;
             sinkChannel = null;
         }
+        workerThread.connectionOpened();
     }
 
     public SocketAddress getPeerAddress() {
@@ -103,6 +104,7 @@ final class NioPipeStreamConnection extends AbstractNioStreamConnection {
         } finally {
             safeClose(sourceChannel);
             safeClose(sinkChannel);
+            ((WorkerThread) getIoThread()).connectionClosed();
         }
     }
 
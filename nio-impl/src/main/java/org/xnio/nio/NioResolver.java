@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.xnio.AddressResolver;
+import org.xnio.FailedIoFuture;
+import org.xnio.FutureResult;
+import org.xnio.IoFuture;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * A caching host name resolver which runs lookups on an executor, so that I/O threads never block on the name service.
+ * Concurrent requests for a host name which is being looked up share the same lookup.
+ */
+final class NioResolver {
+
+    /**
+     * The number of cached host names above which expired entries are swept when a new lookup is started.
+     */
+    private static final int SWEEP_THRESHOLD = 256;
+
+    private final AddressResolver resolver;
+    private final Executor executor;
+    private final long ttl;
+    private final long negativeTtl;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param resolver the resolver to run lookups with
+     * @param executor the executor to run lookups on
+     * @param ttl the time in nanoseconds to cache a resolved host name for
+     * @param negativeTtl the time in nanoseconds to cache the failure to resolve a host name for
+     */
+    NioResolver(final AddressResolver resolver, final Executor executor, final long ttl, final long negativeTtl) {
+        this.resolver = resolver;
+        this.executor = executor;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * Resolve a host name.  If the outcome of a recent lookup is cached, the returned future is already done.
+     *
+     * @param hostName the host name
+     * @return the future addresses of the host
+     */
+    IoFuture<InetAddress[]> resolve(final String hostName) {
+        final long now = nanoTime();
+        for (;;) {
+            final Entry entry = entries.get(hostName);
+            if (entry != null && ! entry.isExpired(now)) {
+                return entry.result.getIoFuture();
+            }
+            final Entry newEntry = new Entry(hostName);
+            if (entry == null ? entries.putIfAbsent(hostName, newEntry) != null : ! entries.replace(hostName, entry, newEntry)) {
+                // another thread got there first
+                continue;
+            }
+            if (entries.size() > SWEEP_THRESHOLD) {
+                sweep(now);
+            }
+            try {
+                executor.execute(newEntry);
+            } catch (RejectedExecutionException e) {
+                entries.remove(hostName, newEntry);
+                final IOException exception = new IOException(e);
+                newEntry.result.setException(exception);
+                return new FailedIoFuture<InetAddress[]>(exception);
+            }
+            return newEntry.result.getIoFuture();
+        }
+    }
+
+    private void sweep(final long now) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    final class Entry implements Runnable {
+        private final String hostName;
+        private final FutureResult<InetAddress[]> result = new FutureResult<InetAddress[]>();
+        private volatile boolean done;
+        private volatile long expires;
+
+        Entry(final String hostName) {
+            this.hostName = hostName;
+        }
+
+        boolean isExpired(final long now) {
+            return done && now - expires >= 0L;
+        }
+
+        public void run() {
+            InetAddress[] addresses;
+            IOException exception;
+            try {
+                addresses = resolver.resolve(hostName);
+                if (addresses == null || addresses.length == 0) {
+                    throw new UnknownHostException(hostName);
+                }
+                exception = null;
+            } catch (UnknownHostException e) {
+                addresses = null;
+                exception = e;
+            } catch (Throwable t) {
+                // even an error must complete the entry, or its waiters would wait forever
+                addresses = null;
+                exception = new IOException(t);
+            }
+            final long lifetime = exception == null ? ttl : exception instanceof UnknownHostException ? negativeTtl : 0L;
+            expires = nanoTime() + lifetime;
+            done = true;
+            if (lifetime == 0L) {
+                entries.remove(hostName, this);
+            }
+            if (exception == null) {
+                result.setResult(addresses);
+            } else {
+                result.setException(exception);
+            }
+        }
+    }
+}
@@ -18,7 +18,12 @@
 
 package org.xnio.nio;
 
+import static java.lang.Thread.currentThread;
+import static org.xnio.Bits.allAreClear;
+import static org.xnio.Bits.allAreSet;
+import static org.xnio.IoUtils.safeClose;
 import static org.xnio.nio.Log.log;
+import static org.xnio.nio.Log.socketLog;
 
 import java.io.IOException;
 import java.net.SocketException;
@@ -28,10 +33,13 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.xnio.Bits;
+import org.xnio.Buffers;
 import org.xnio.Xnio;
+import org.xnio.XnioExecutor;
 import org.xnio.XnioIoThread;
 import org.xnio.XnioWorker;
 import org.xnio.channels.ReadTimeoutException;
@@ -45,6 +53,19 @@ import org.xnio.conduits.StreamSourceConduit;
 import org.xnio.conduits.WriteReadyHandler;
 
 final class NioSocketConduit extends NioHandle implements StreamSourceConduit, StreamSinkConduit {
+
+    /**
+     * The size class of the write coalescing buffer, which holds 16 KiB.  A write which does not fit goes out in one
+     * gathering write along with the bytes which are already held.  The buffer comes from the same per-thread cache as
+     * read-ahead buffers, and goes back to it once it is empty.
+     */
+    private static final int COALESCE_CLASS = 5;
+    /**
+     * The size class of the first read-ahead buffer of a connection.
+     */
+    private static final int INITIAL_READ_AHEAD_CLASS = 2;
+    static final int DEFAULT_READ_AHEAD_BUDGET = 65536;
+
     private final SocketChannel socketChannel;
     private final NioSocketStreamConnection connection;
     private ReadReadyHandler readReadyHandler;
@@ -52,25 +73,120 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
 
     @SuppressWarnings("unused")
     private volatile int readTimeout;
-    private long lastRead;
+    private volatile long lastRead;
+    /**
+     * Set when the read timeout expired while reads were resumed; cleared by the next read which transfers data.
+     */
+    private volatile boolean readExpired;
 
     @SuppressWarnings("rawtypes")
     private static final AtomicIntegerFieldUpdater<NioSocketConduit> readTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketConduit.class, "readTimeout");
 
     @SuppressWarnings("unused")
     private volatile int writeTimeout;
-    private long lastWrite;
+    private volatile long lastWrite;
+    /**
+     * Set when the write timeout expired while writes were resumed; cleared by the next write which transfers data.
+     */
+    private volatile boolean writeExpired;
 
     @SuppressWarnings("rawtypes")
     private static final AtomicIntegerFieldUpdater<NioSocketConduit> writeTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketConduit.class, "writeTimeout");
 
+    // Write coalescing
+    private volatile boolean corked;
+    private volatile boolean coalescing;
+    /**
+     * Bytes which were written but not yet sent, in fill mode; only used by the writing thread.
+     */
+    private ByteBuffer coalesced;
+    private boolean terminatePending;
+    private final Runnable flushTask;
+    private boolean flushScheduled;
+    /**
+     * Set while writes are resumed only to send held bytes, in which case {@link #writesWanted} tells whether the
+     * application resumed them too.
+     */
+    private volatile boolean drainResumed;
+    private volatile boolean writesWanted;
+
+    // Read-ahead state other than the options is only used by the reading thread
+    private volatile boolean readAhead;
+    private volatile int readAheadBudget = DEFAULT_READ_AHEAD_BUDGET;
+    /**
+     * Bytes which were read ahead and not yet taken by the application, ready for reading; {@code null} if none.
+     */
+    private ByteBuffer readAheadBuffer;
+    private int readAheadClass = INITIAL_READ_AHEAD_CLASS;
+    /**
+     * {@code true} if the data received by the last readiness event would have fit in the next smaller buffer.
+     */
+    private boolean readAheadShrinking;
+    /**
+     * The number of bytes read from the socket during the current readiness event, or {@code -1} outside of one.
+     */
+    private int eventBytes = -1;
+    private long eventDelivered;
+    private boolean socketDrained;
+    private final Runnable readAheadTask;
+
+    // Fairness budget; the transfer count is only used by the I/O thread
+    private volatile int ioEventBudget;
+    /**
+     * The number of bytes transferred during the current event of the I/O thread, or {@code -1} outside of one or
+     * without a budget.
+     */
+    private long eventTransferred = -1L;
+    /**
+     * The resumed operations which were set aside because the budget of an event was used up.
+     */
+    private volatile int deferredOps;
+    private final Runnable deferredTask;
+
+    private static final AtomicIntegerFieldUpdater<NioSocketConduit> deferredOpsUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketConduit.class, "deferredOps");
+
+    // Timeout enforcement; only used by the conduit's thread
+    private final Runnable timeoutTask;
+    private XnioExecutor.Key timeoutKey;
+    private long timeoutDeadline;
+    private int watchedOps;
+    private boolean timedOut;
+
     NioSocketConduit(final WorkerThread workerThread, final SelectionKey selectionKey, final NioSocketStreamConnection connection) {
         super(workerThread, selectionKey);
         this.connection = connection;
         this.socketChannel = (SocketChannel) selectionKey.channel();
+        timeoutTask = new Runnable() {
+            public void run() {
+                checkTimeouts();
+            }
+        };
+        readAheadTask = new Runnable() {
+            public void run() {
+                if (readAheadBuffer != null && isResumed(SelectionKey.OP_READ) && ! isReadShutdown()) {
+                    handleReady(SelectionKey.OP_READ);
+                }
+            }
+        };
+        deferredTask = new Runnable() {
+            public void run() {
+                resumeDeferred();
+            }
+        };
+        flushTask = new Runnable() {
+            public void run() {
+                flushScheduled = false;
+                if (! corked) {
+                    flushHeld();
+                }
+            }
+        };
     }
 
     void handleReady(int ops) {
+        if (ioEventBudget > 0) {
+            eventTransferred = 0L;
+        }
         try {
             if (ops == 0) {
                 // the dreaded bug
@@ -86,21 +202,194 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
             }
             if (Bits.allAreSet(ops, SelectionKey.OP_READ)) try {
                 if (isReadShutdown()) suspendReads();
-                readReadyHandler.readReady();
+                if (readAhead || readAheadBuffer != null) {
+                    readAheadReady();
+                } else {
+                    readReadyHandler.readReady();
+                }
             } catch (Throwable ignored) {
             }
             if (Bits.allAreSet(ops, SelectionKey.OP_WRITE)) try {
                 if (isWriteShutdown()) suspendWrites();
-                writeReadyHandler.writeReady();
+                if (! drainResumed || drainHeld()) {
+                    writeReadyHandler.writeReady();
+                }
             } catch (Throwable ignored) {
             }
-        } catch (CancelledKeyException ignored) {}
+        } catch (CancelledKeyException ignored) {
+        } finally {
+            eventTransferred = -1L;
+        }
     }
 
     public XnioWorker getWorker() {
         return getWorkerThread().getWorker();
     }
 
+    // Timeouts
+
+    /**
+     * Start enforcing the timeout of a resumed direction.  Only one timer is kept per conduit; it is set for the
+     * earliest deadline and re-arms itself when it finds that the deadline was moved by a transfer, so transfers
+     * themselves only record a time stamp.
+     *
+     * @param op the direction's operation
+     */
+    private void watchTimeout(final int op) {
+        final WorkerThread thread = getWorkerThread();
+        if (thread == currentThread()) {
+            startWatching(op);
+        } else {
+            try {
+                thread.execute(new Runnable() {
+                    public void run() {
+                        startWatching(op);
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                // the thread is exiting and will close the connection
+            }
+        }
+    }
+
+    private void startWatching(final int op) {
+        if (allAreSet(watchedOps, op)) {
+            return;
+        }
+        final int timeout = op == SelectionKey.OP_READ ? readTimeout : writeTimeout;
+        if (timeout <= 0 || ! isResumed(op) || ! connection.isOpen()) {
+            return;
+        }
+        // time is measured from the moment the direction is resumed
+        final long now = System.nanoTime();
+        if (op == SelectionKey.OP_READ) {
+            lastRead = now;
+        } else {
+            lastWrite = now;
+        }
+        watchedOps |= op;
+        final long delay = timeout * 1000000L;
+        if (timeoutKey == null || now + delay - timeoutDeadline < 0L) {
+            if (timeoutKey != null) {
+                timeoutKey.remove();
+            }
+            scheduleTimeoutCheck(now, delay);
+        }
+    }
+
+    /**
+     * Stop enforcing timeouts and discard the timer, so that a closed connection is not kept reachable from the delay
+     * queue of its thread.  May be called from any thread.
+     */
+    void cancelTimeouts() {
+        final WorkerThread thread = getWorkerThread();
+        if (thread == currentThread()) {
+            stopWatching();
+        } else {
+            try {
+                thread.execute(new Runnable() {
+                    public void run() {
+                        stopWatching();
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                // the thread is exiting, and its timers with it
+            }
+        }
+    }
+
+    private void stopWatching() {
+        watchedOps = 0;
+        final XnioExecutor.Key timeoutKey = this.timeoutKey;
+        if (timeoutKey != null) {
+            this.timeoutKey = null;
+            timeoutKey.remove();
+        }
+    }
+
+    private void scheduleTimeoutCheck(final long now, final long delay) {
+        timeoutDeadline = now + delay;
+        try {
+            timeoutKey = getWorkerThread().executeAfter(timeoutTask, (delay + 999999L) / 1000000L, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // the thread is exiting and will close the connection
+            timeoutKey = null;
+            watchedOps = 0;
+        }
+    }
+
+    /**
+     * Check the watched directions for an expired timeout.  An expired direction is no longer watched, and its ready
+     * handler is called so that its next read or write throws a timeout exception.
+     */
+    void checkTimeouts() {
+        timeoutKey = null;
+        final long now = System.nanoTime();
+        long delay = Long.MAX_VALUE;
+        boolean expireRead = false;
+        boolean expireWrite = false;
+        if (allAreSet(watchedOps, SelectionKey.OP_READ)) {
+            final long remaining = remaining(SelectionKey.OP_READ, readTimeout, lastRead, now);
+            if (remaining == 0L) {
+                expireRead = true;
+            } else if (remaining > 0L) {
+                delay = remaining;
+            }
+        }
+        if (allAreSet(watchedOps, SelectionKey.OP_WRITE)) {
+            final long remaining = remaining(SelectionKey.OP_WRITE, writeTimeout, lastWrite, now);
+            if (remaining == 0L) {
+                expireWrite = true;
+            } else if (remaining > 0L && remaining < delay) {
+                delay = remaining;
+            }
+        }
+        if (delay != Long.MAX_VALUE) {
+            scheduleTimeoutCheck(now, delay);
+        }
+        if (expireRead || expireWrite) {
+            if (! timedOut) {
+                timedOut = true;
+                connection.timedOut();
+            }
+            if (expireRead) {
+                readExpired = true;
+                final ReadReadyHandler readReadyHandler = this.readReadyHandler;
+                if (readReadyHandler != null) try {
+                    readReadyHandler.readReady();
+                } catch (Throwable ignored) {
+                }
+            }
+            if (expireWrite) {
+                writeExpired = true;
+                final WriteReadyHandler writeReadyHandler = this.writeReadyHandler;
+                if (writeReadyHandler != null) try {
+                    writeReadyHandler.writeReady();
+                } catch (Throwable ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the time left before a watched direction times out, and stop watching it if it no longer needs to be.
+     *
+     * @return the remaining nanoseconds, {@code 0} if the timeout expired, or {@code -1} if the direction is no
+     *      longer watched
+     */
+    private long remaining(final int op, final int timeout, final long last, final long now) {
+        if (timeout <= 0 || ! isResumed(op)) {
+            watchedOps &= ~op;
+            return -1L;
+        }
+        final long remaining = last + timeout * 1000000L - now;
+        if (remaining <= 0L) {
+            watchedOps &= ~op;
+            return 0L;
+        }
+        return remaining;
+    }
+
     void forceTermination() {
         final ReadReadyHandler read = readReadyHandler;
         if (read != null) read.forceTermination();
@@ -118,7 +407,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     // Write methods
 
     int getAndSetWriteTimeout(int newVal) {
-        return writeTimeoutUpdater.getAndSet(this, newVal);
+        final int oldVal = writeTimeoutUpdater.getAndSet(this, newVal);
+        if (newVal > 0) {
+            watchTimeout(SelectionKey.OP_WRITE);
+        }
+        return oldVal;
     }
 
     int getWriteTimeout() {
@@ -130,6 +423,12 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (timeout > 0) {
             if (xfer) {
                 lastWrite = System.nanoTime();
+                if (writeExpired) {
+                    writeExpired = false;
+                    watchTimeout(SelectionKey.OP_WRITE);
+                }
+            } else if (writeExpired) {
+                throw log.writeTimeout();
             } else {
                 long lastRead = this.lastWrite;
                 if (lastRead > 0L && ((System.nanoTime() - lastRead) / 1000000L) > (long) timeout) {
@@ -139,8 +438,168 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         }
     }
 
+    // Write coalescing
+
+    boolean getAndSetCork(final boolean newVal) {
+        final boolean oldVal = corked;
+        corked = newVal;
+        if (oldVal && ! newVal) {
+            scheduleFlush();
+        }
+        return oldVal;
+    }
+
+    boolean isCorked() {
+        return corked;
+    }
+
+    boolean getAndSetWriteCoalescing(final boolean newVal) {
+        final boolean oldVal = coalescing;
+        coalescing = newVal;
+        return oldVal;
+    }
+
+    boolean isWriteCoalescing() {
+        return coalescing;
+    }
+
+    private boolean isHolding() {
+        final ByteBuffer coalesced = this.coalesced;
+        return coalesced != null && coalesced.position() > 0;
+    }
+
+    /**
+     * Take bytes to send later, or send them along with the bytes already held if there is no room for them.
+     *
+     * @return the number of bytes taken from the given buffers
+     */
+    private long coalesce(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        final long total = Buffers.remaining(srcs, offset, length);
+        if (total == 0L) {
+            return 0L;
+        }
+        ByteBuffer coalesced = this.coalesced;
+        if (coalesced == null) {
+            coalesced = this.coalesced = getWorkerThread().allocateReadAheadBuffer(COALESCE_CLASS);
+        }
+        if (total <= coalesced.remaining()) {
+            Buffers.copy(coalesced, srcs, offset, length);
+            scheduleFlush();
+            charge(total);
+            return total;
+        }
+        final ByteBuffer[] all = new ByteBuffer[length + 1];
+        all[0] = coalesced;
+        System.arraycopy(srcs, offset, all, 1, length);
+        coalesced.flip();
+        final int held = coalesced.remaining();
+        final long res;
+        try {
+            res = socketChannel.write(all);
+        } finally {
+            coalesced.compact();
+            if (coalesced.position() == 0) {
+                releaseCoalesced();
+            }
+        }
+        checkWriteTimeout(res > 0L);
+        charge(res);
+        return Math.max(0L, res - held);
+    }
+
+    /**
+     * Send held bytes.
+     *
+     * @return {@code true} if nothing is held any longer
+     */
+    private boolean sendHeld() throws IOException {
+        final ByteBuffer coalesced = this.coalesced;
+        if (coalesced == null || coalesced.position() == 0) {
+            return true;
+        }
+        coalesced.flip();
+        final int res;
+        try {
+            res = socketChannel.write(coalesced);
+        } finally {
+            coalesced.compact();
+        }
+        checkWriteTimeout(res > 0);
+        if (coalesced.position() == 0) {
+            releaseCoalesced();
+            return true;
+        }
+        return false;
+    }
+
+    private void releaseCoalesced() {
+        final ByteBuffer coalesced = this.coalesced;
+        if (coalesced != null) {
+            this.coalesced = null;
+            getWorkerThread().freeReadAheadBuffer(coalesced);
+        }
+    }
+
+    /**
+     * Arrange for held bytes to be sent once the I/O thread has finished the current batch of events.  Bytes which
+     * are written from another thread are only sent by an explicit flush.
+     */
+    private void scheduleFlush() {
+        if (corked || flushScheduled) {
+            return;
+        }
+        final WorkerThread thread = getWorkerThread();
+        if (thread == currentThread()) {
+            flushScheduled = true;
+            thread.execute(flushTask);
+        }
+    }
+
+    /**
+     * Send held bytes on behalf of the application, resuming writes to send the rest if the socket is full.
+     */
+    private void flushHeld() {
+        try {
+            if (sendHeld()) {
+                if (terminatePending) {
+                    terminatePending = false;
+                    terminateWrites();
+                }
+            } else if (! drainResumed) {
+                writesWanted = isResumed(SelectionKey.OP_WRITE);
+                drainResumed = true;
+                resume(SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            socketLog.tracef(e, "Failed to send coalesced writes on %s", this);
+            safeClose(connection);
+        }
+    }
+
+    /**
+     * Continue sending held bytes when writes were resumed to do so.
+     *
+     * @return {@code true} if the write ready handler should be called
+     */
+    private boolean drainHeld() {
+        flushHeld();
+        if (isHolding()) {
+            return writesWanted;
+        }
+        drainResumed = false;
+        if (! writesWanted) {
+            suspend(SelectionKey.OP_WRITE);
+            return false;
+        }
+        return true;
+    }
+
     public final long transferFrom(final FileChannel src, final long position, final long count) throws IOException {
+        if (yielding(SelectionKey.OP_WRITE) || ! sendHeld()) {
+            return 0L;
+        }
         long res = src.transferTo(position, count, socketChannel);
+        charge(res);
         checkWriteTimeout(res > 0L);
         return res;
     }
@@ -150,16 +609,30 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public int write(final ByteBuffer src) throws IOException {
+        if (yielding(SelectionKey.OP_WRITE)) {
+            return 0;
+        }
+        if (corked || coalescing || isHolding()) {
+            return (int) coalesce(new ByteBuffer[] { src }, 0, 1);
+        }
         int res = socketChannel.write(src);
+        charge(res);
         checkWriteTimeout(res > 0);
         return res;
     }
 
     public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        if (yielding(SelectionKey.OP_WRITE)) {
+            return 0L;
+        }
+        if (corked || coalescing || isHolding()) {
+            return coalesce(srcs, offset, length);
+        }
         if (length == 1) {
             return write(srcs[offset]);
         }
         long res = socketChannel.write(srcs, offset, length);
+        charge(res);
         checkWriteTimeout(res > 0L);
         return res;
     }
@@ -175,10 +648,22 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public boolean flush() throws IOException {
+        if (! sendHeld()) {
+            return false;
+        }
+        if (terminatePending) {
+            terminatePending = false;
+            terminateWrites();
+        }
         return true;
     }
 
     public void terminateWrites() throws IOException {
+        if (isHolding()) {
+            // shut down once the held bytes are flushed
+            terminatePending = true;
+            return;
+        }
         if (connection.writeClosed()) try {
             suspend(SelectionKey.OP_WRITE);
             try {
@@ -193,10 +678,13 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public void truncateWrites() throws IOException {
+        releaseCoalesced();
+        terminatePending = false;
         terminateWrites();
     }
 
     void writeTerminated() {
+        releaseCoalesced();
         final WriteReadyHandler writeReadyHandler = this.writeReadyHandler;
         if (writeReadyHandler != null) try {
             writeReadyHandler.terminated();
@@ -208,19 +696,31 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public void resumeWrites() {
+        writesWanted = true;
         resume(SelectionKey.OP_WRITE);
+        if (writeTimeout > 0) {
+            watchTimeout(SelectionKey.OP_WRITE);
+        }
     }
 
     public void suspendWrites() {
-        suspend(SelectionKey.OP_WRITE);
+        writesWanted = false;
+        clearDeferred(SelectionKey.OP_WRITE);
+        if (! drainResumed) {
+            suspend(SelectionKey.OP_WRITE);
+        }
     }
 
     public void wakeupWrites() {
+        writesWanted = true;
         wakeup(SelectionKey.OP_WRITE);
+        if (writeTimeout > 0) {
+            watchTimeout(SelectionKey.OP_WRITE);
+        }
     }
 
     public boolean isWriteResumed() {
-        return isResumed(SelectionKey.OP_WRITE);
+        return drainResumed ? writesWanted : isResumed(SelectionKey.OP_WRITE) || isDeferred(SelectionKey.OP_WRITE);
     }
 
     public void awaitWritable() throws IOException {
@@ -250,7 +750,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     // Read methods
 
     int getAndSetReadTimeout(int newVal) {
-        return readTimeoutUpdater.getAndSet(this, newVal);
+        final int oldVal = readTimeoutUpdater.getAndSet(this, newVal);
+        if (newVal > 0) {
+            watchTimeout(SelectionKey.OP_READ);
+        }
+        return oldVal;
     }
 
     int getReadTimeout() {
@@ -262,6 +766,12 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (timeout > 0) {
             if (xfer) {
                 lastRead = System.nanoTime();
+                if (readExpired) {
+                    readExpired = false;
+                    watchTimeout(SelectionKey.OP_READ);
+                }
+            } else if (readExpired) {
+                throw log.readTimeout();
             } else {
                 long lastRead = this.lastRead;
                 if (lastRead > 0L && ((System.nanoTime() - lastRead) / 1000000L) > (long) timeout) {
@@ -271,8 +781,311 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         }
     }
 
+    // Fairness budget
+
+    int getAndSetIoEventBudget(final int newVal) {
+        if (newVal < 0) {
+            throw log.optionOutOfRange("IO_EVENT_BUDGET");
+        }
+        final int oldVal = ioEventBudget;
+        ioEventBudget = newVal;
+        return oldVal;
+    }
+
+    int getIoEventBudget() {
+        return ioEventBudget;
+    }
+
+    private void charge(final long res) {
+        if (res > 0L && eventTransferred != -1L) {
+            eventTransferred += res;
+        }
+    }
+
+    /**
+     * Determine whether the connection has used up the budget of the current event.  If so, the operation is set
+     * aside until the I/O thread has run the tasks queued behind it, so that one busy connection cannot hold up the
+     * others on the same thread.
+     *
+     * @param op the operation being attempted
+     * @return {@code true} if the operation should transfer nothing
+     */
+    private boolean yielding(final int op) {
+        final long transferred = eventTransferred;
+        if (transferred == -1L || transferred < ioEventBudget || currentThread() != getWorkerThread()) {
+            return false;
+        }
+        if (isResumed(op)) {
+            int deferred;
+            do {
+                deferred = deferredOps;
+            } while (! deferredOpsUpdater.compareAndSet(this, deferred, deferred | op));
+            suspend(op);
+            if (deferred == 0) try {
+                getWorkerThread().execute(deferredTask);
+            } catch (RejectedExecutionException ignored) {
+                // the thread is exiting and will close the connection
+            }
+        }
+        return true;
+    }
+
+    private void resumeDeferred() {
+        final int ops = deferredOpsUpdater.getAndSet(this, 0);
+        if (ops == 0) {
+            return;
+        }
+        resume(ops);
+        if (allAreSet(ops, SelectionKey.OP_READ) && readTimeout > 0) {
+            startWatching(SelectionKey.OP_READ);
+        }
+        if (allAreSet(ops, SelectionKey.OP_WRITE) && writeTimeout > 0) {
+            startWatching(SelectionKey.OP_WRITE);
+        }
+        handleReady(ops);
+    }
+
+    private boolean isDeferred(final int op) {
+        return allAreSet(deferredOps, op);
+    }
+
+    private void clearDeferred(final int op) {
+        int deferred;
+        do {
+            deferred = deferredOps;
+            if (allAreClear(deferred, op)) {
+                return;
+            }
+        } while (! deferredOpsUpdater.compareAndSet(this, deferred, deferred & ~op));
+    }
+
+    // Read-ahead
+
+    boolean getAndSetReadAhead(final boolean newVal) {
+        final boolean oldVal = readAhead;
+        readAhead = newVal;
+        return oldVal;
+    }
+
+    boolean isReadAhead() {
+        return readAhead;
+    }
+
+    int getAndSetReadAheadBudget(final int newVal) {
+        if (newVal < 1) {
+            throw log.optionOutOfRange("READ_AHEAD_BUDGET");
+        }
+        final int oldVal = readAheadBudget;
+        readAheadBudget = newVal;
+        return oldVal;
+    }
+
+    int getReadAheadBudget() {
+        return readAheadBudget;
+    }
+
+    private int getReadAheadSize() {
+        return WorkerThread.MIN_READ_AHEAD << readAheadClass;
+    }
+
+    /**
+     * Call the read ready handler for as long as it makes progress, until the socket has no more data or the budget
+     * of the event is used up, and then fit the read-ahead size to the amount of data which was received.
+     */
+    private void readAheadReady() {
+        final ReadReadyHandler readReadyHandler = this.readReadyHandler;
+        final int budget = readAheadBudget;
+        eventBytes = 0;
+        eventDelivered = 0L;
+        socketDrained = false;
+        try {
+            long before;
+            do {
+                before = eventDelivered;
+                readReadyHandler.readReady();
+            } while (eventDelivered > before && (readAheadBuffer != null || eventBytes < budget && ! socketDrained) && isResumed(SelectionKey.OP_READ) && ! isReadShutdown());
+        } finally {
+            if (eventBytes > 0) {
+                fitReadAhead(eventBytes);
+            }
+            eventBytes = -1;
+            // the selector does not know about bytes which were read ahead
+            if (readAheadBuffer != null && isResumed(SelectionKey.OP_READ)) {
+                scheduleReadAhead();
+            }
+        }
+    }
+
+    /**
+     * Grow the read-ahead size after an event which received at least as much, or shrink it after two events in a row
+     * which would have fit in half of it.
+     */
+    private void fitReadAhead(final int received) {
+        final int size = getReadAheadSize();
+        if (received >= size) {
+            readAheadShrinking = false;
+            if (readAheadClass < WorkerThread.READ_AHEAD_CLASSES - 1) {
+                readAheadClass ++;
+            }
+        } else if (readAheadClass > 0 && received <= size >> 1) {
+            if (readAheadShrinking) {
+                readAheadShrinking = false;
+                readAheadClass --;
+            } else {
+                readAheadShrinking = true;
+            }
+        } else {
+            readAheadShrinking = false;
+        }
+    }
+
+    private void scheduleReadAhead() {
+        try {
+            getWorkerThread().execute(readAheadTask);
+        } catch (RejectedExecutionException ignored) {
+            // the thread is exiting and will close the connection
+        }
+    }
+
+    private int readSocket(final ByteBuffer dst) throws IOException {
+        final int res;
+        try {
+            res = socketChannel.read(dst);
+        } catch (ClosedChannelException e) {
+            return -1;
+        }
+        if (res > 0) {
+            if (eventBytes != -1) eventBytes += res;
+        } else if (res == 0) {
+            socketDrained = true;
+        }
+        return res;
+    }
+
+    private long readSocket(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        final long res;
+        try {
+            res = socketChannel.read(dsts, offset, length);
+        } catch (ClosedChannelException e) {
+            return -1L;
+        }
+        if (res > 0L) {
+            if (eventBytes != -1) eventBytes += (int) res;
+        } else if (res == 0L) {
+            socketDrained = true;
+        }
+        return res;
+    }
+
+    /**
+     * Read from the socket into a new read-ahead buffer of the current read-ahead size.
+     *
+     * @return the number of bytes read ahead, {@code 0} if there were none, or {@code -1} on end of stream
+     */
+    private int fillReadAhead() throws IOException {
+        final WorkerThread thread = getWorkerThread();
+        final ByteBuffer buffer = thread.allocateReadAheadBuffer(readAheadClass);
+        final int res;
+        try {
+            res = readSocket(buffer);
+        } finally {
+            if (buffer.position() == 0) {
+                thread.freeReadAheadBuffer(buffer);
+            }
+        }
+        if (res > 0) {
+            buffer.flip();
+            readAheadBuffer = buffer;
+        }
+        return res;
+    }
+
+    private void releaseReadAhead() {
+        final ByteBuffer buffer = readAheadBuffer;
+        if (buffer != null) {
+            readAheadBuffer = null;
+            getWorkerThread().freeReadAheadBuffer(buffer);
+        }
+    }
+
+    private long delivered(final long res) throws IOException {
+        if (res == -1L) {
+            terminateReads();
+        } else {
+            if (res > 0L) eventDelivered += res;
+            charge(res);
+            checkReadTimeout(res > 0L);
+        }
+        return res;
+    }
+
+    private int readAhead(final ByteBuffer dst) throws IOException {
+        ByteBuffer buffer = readAheadBuffer;
+        if (buffer == null) {
+            if (! readAhead || dst.remaining() >= getReadAheadSize()) {
+                return (int) delivered(readSocket(dst));
+            } else if (! dst.hasRemaining()) {
+                return 0;
+            }
+            final int res = fillReadAhead();
+            if (res <= 0) {
+                return (int) delivered(res);
+            }
+            buffer = readAheadBuffer;
+        }
+        final int res = Buffers.copy(dst, buffer);
+        if (! buffer.hasRemaining()) {
+            releaseReadAhead();
+        }
+        return (int) delivered(res);
+    }
+
+    private long readAhead(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        ByteBuffer buffer = readAheadBuffer;
+        if (buffer == null) {
+            final long remaining = Buffers.remaining(dsts, offset, length);
+            if (! readAhead || remaining >= getReadAheadSize()) {
+                return delivered(readSocket(dsts, offset, length));
+            } else if (remaining == 0L) {
+                return 0L;
+            }
+            final int res = fillReadAhead();
+            if (res <= 0) {
+                return delivered(res);
+            }
+            buffer = readAheadBuffer;
+        }
+        final int res = Buffers.copy(dsts, offset, length, buffer);
+        if (! buffer.hasRemaining()) {
+            releaseReadAhead();
+        }
+        return delivered(res);
+    }
+
     public long transferTo(final long position, final long count, final FileChannel target) throws IOException {
+        if (yielding(SelectionKey.OP_READ)) {
+            return 0L;
+        }
+        final ByteBuffer buffer = readAheadBuffer;
+        if (buffer != null) {
+            // the bytes which were read ahead come first
+            final int limit = buffer.limit();
+            if (count < buffer.remaining()) {
+                buffer.limit(buffer.position() + (int) count);
+            }
+            final int res;
+            try {
+                res = target.write(buffer, position);
+            } finally {
+                buffer.limit(limit);
+            }
+            if (! buffer.hasRemaining()) {
+                releaseReadAhead();
+            }
+            return delivered(res);
+        }
         long res = target.transferFrom(socketChannel, position, count);
+        charge(res);
         checkReadTimeout(res > 0L);
         return res;
     }
@@ -282,12 +1095,19 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public int read(final ByteBuffer dst) throws IOException {
+        if (yielding(SelectionKey.OP_READ)) {
+            return 0;
+        }
+        if (readAhead || readAheadBuffer != null) {
+            return readAhead(dst);
+        }
         int res;
         try {
             res = socketChannel.read(dst);
         } catch (ClosedChannelException e) {
             return -1;
         }
+        charge(res);
         if (res != -1) checkReadTimeout(res > 0);
         else terminateReads();
         return res;
@@ -297,12 +1117,19 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (length == 1) {
             return read(dsts[offset]);
         }
+        if (yielding(SelectionKey.OP_READ)) {
+            return 0L;
+        }
+        if (readAhead || readAheadBuffer != null) {
+            return readAhead(dsts, offset, length);
+        }
         long res;
         try {
             res = socketChannel.read(dsts, offset, length);
         } catch (ClosedChannelException e) {
             return -1L;
         }
+        charge(res);
         if (res != -1L) checkReadTimeout(res > 0L);
         else terminateReads();
         return res;
@@ -323,6 +1150,7 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     void readTerminated() {
+        releaseReadAhead();
         final ReadReadyHandler readReadyHandler = this.readReadyHandler;
         if (readReadyHandler != null) try {
             readReadyHandler.terminated();
@@ -335,27 +1163,43 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
 
     public void resumeReads() {
         resume(SelectionKey.OP_READ);
+        if (readAheadBuffer != null) {
+            scheduleReadAhead();
+        }
+        if (readTimeout > 0) {
+            watchTimeout(SelectionKey.OP_READ);
+        }
     }
 
     public void suspendReads() {
+        clearDeferred(SelectionKey.OP_READ);
         suspend(SelectionKey.OP_READ);
     }
 
     public void wakeupReads() {
         wakeup(SelectionKey.OP_READ);
+        if (readTimeout > 0) {
+            watchTimeout(SelectionKey.OP_READ);
+        }
     }
 
     public boolean isReadResumed() {
-        return isResumed(SelectionKey.OP_READ);
+        return isResumed(SelectionKey.OP_READ) || isDeferred(SelectionKey.OP_READ);
     }
 
     public void awaitReadable() throws IOException {
         Xnio.checkBlockingAllowed();
+        if (readAheadBuffer != null) {
+            return;
+        }
         SelectorUtils.await((NioXnio)getWorker().getXnio(), socketChannel, SelectionKey.OP_READ);
     }
 
     public void awaitReadable(final long time, final TimeUnit timeUnit) throws IOException {
         Xnio.checkBlockingAllowed();
+        if (readAheadBuffer != null) {
+            return;
+        }
         SelectorUtils.await((NioXnio)getWorker().getXnio(), socketChannel, SelectionKey.OP_READ, time, timeUnit);
     }
 
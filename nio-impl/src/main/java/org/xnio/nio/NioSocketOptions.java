@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SocketChannel;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.Set;
+import org.xnio.Option;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+import static org.xnio.IoUtils.safeClose;
+import static org.xnio.nio.Log.log;
+
+/**
+ * Socket options which are only available on some Java versions or platforms, looked up reflectively.  Each option
+ * is {@code null} if it is not available.
+ */
+final class NioSocketOptions {
+
+    /**
+     * {@code StandardSocketOptions.SO_REUSEPORT} (Java 9 and later).
+     */
+    static final SocketOption<Boolean> SO_REUSEPORT = find("java.net.StandardSocketOptions", "SO_REUSEPORT", Boolean.class);
+
+    /**
+     * {@code ExtendedSocketOptions.TCP_QUICKACK} (Java 10 and later, Linux).
+     */
+    static final SocketOption<Boolean> TCP_QUICKACK = find("jdk.net.ExtendedSocketOptions", "TCP_QUICKACK", Boolean.class);
+
+    /**
+     * {@code ExtendedSocketOptions.TCP_FASTOPEN}, if the JDK provides it.
+     */
+    static final SocketOption<Integer> TCP_FASTOPEN = find("jdk.net.ExtendedSocketOptions", "TCP_FASTOPEN", Integer.class);
+
+    /**
+     * {@code ExtendedSocketOptions.TCP_DEFER_ACCEPT}, if the JDK provides it.
+     */
+    static final SocketOption<Integer> TCP_DEFER_ACCEPT = find("jdk.net.ExtendedSocketOptions", "TCP_DEFER_ACCEPT", Integer.class);
+
+    /**
+     * The options supported by stream sockets on this platform.
+     */
+    private static final Set<SocketOption<?>> STREAM_SOCKET_OPTIONS = streamSocketOptions();
+
+    private NioSocketOptions() {
+    }
+
+    private static Set<SocketOption<?>> streamSocketOptions() {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            return channel.supportedOptions();
+        } catch (IOException e) {
+            return Collections.emptySet();
+        } finally {
+            safeClose(channel);
+        }
+    }
+
+    /**
+     * Get the socket option which implements the given platform-dependent option.
+     *
+     * @param option the option
+     * @return the socket option, or {@code null} if the option is not platform-dependent or not available
+     */
+    static SocketOption<?> forOption(final Option<?> option) {
+        if (option == Options.TCP_QUICKACK) {
+            return TCP_QUICKACK;
+        } else if (option == Options.TCP_FASTOPEN) {
+            return TCP_FASTOPEN;
+        } else if (option == Options.TCP_DEFER_ACCEPT) {
+            return TCP_DEFER_ACCEPT;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Determine whether the given platform-dependent option is supported by a channel.
+     *
+     * @param channel the channel
+     * @param option the option
+     * @return {@code true} if the option can be used with the channel
+     */
+    static boolean isSupported(final NetworkChannel channel, final Option<?> option) {
+        final SocketOption<?> socketOption = forOption(option);
+        return socketOption != null && channel.supportedOptions().contains(socketOption);
+    }
+
+    /**
+     * Determine whether the given platform-dependent option is supported by stream sockets, such as those accepted by
+     * a server.
+     *
+     * @param option the option
+     * @return {@code true} if the option can be used with stream sockets
+     */
+    static boolean isSupportedByStreams(final Option<?> option) {
+        final SocketOption<?> socketOption = forOption(option);
+        return socketOption != null && STREAM_SOCKET_OPTIONS.contains(socketOption);
+    }
+
+    static <T> T getOption(final NetworkChannel channel, final Option<T> option) throws IOException {
+        final SocketOption<?> socketOption = forOption(option);
+        if (socketOption == null || ! channel.supportedOptions().contains(socketOption)) {
+            return null;
+        }
+        return option.cast(channel.getOption(socketOption));
+    }
+
+    /**
+     * Set a platform-dependent option on a channel, if the channel supports it.  A {@code null} value restores the
+     * option's default.
+     *
+     * @param channel the channel
+     * @param option the option
+     * @param value the new value
+     * @return the old value, or {@code null} if the option is not supported
+     * @throws IOException if the option could not be set
+     */
+    static <T> T setOption(final NetworkChannel channel, final Option<T> option, final T value) throws IOException {
+        final SocketOption<?> socketOption = forOption(option);
+        if (socketOption == null || ! channel.supportedOptions().contains(socketOption)) {
+            log.tracef("Option %s is not supported by %s", option, channel);
+            return null;
+        }
+        final T old = option.cast(channel.getOption(socketOption));
+        setSocketOption(channel, socketOption, value);
+        return old;
+    }
+
+    /**
+     * Apply each of the given platform-dependent options which is present in the option map to a channel.  Options
+     * which the channel does not support are skipped.
+     *
+     * @param channel the channel
+     * @param optionMap the option map
+     * @param options the options to apply
+     * @throws IOException if an option could not be set
+     */
+    static void apply(final NetworkChannel channel, final OptionMap optionMap, final Option<?>... options) throws IOException {
+        for (Option<?> option : options) {
+            if (optionMap.contains(option)) {
+                final SocketOption<?> socketOption = forOption(option);
+                if (socketOption == null || ! channel.supportedOptions().contains(socketOption)) {
+                    log.debugf("Ignoring option %s, which is not supported on this platform", option);
+                } else {
+                    setSocketOption(channel, socketOption, optionMap.get(option));
+                }
+            }
+        }
+    }
+
+    private static <T> void setSocketOption(final NetworkChannel channel, final SocketOption<T> socketOption, final Object value) throws IOException {
+        final Class<T> type = socketOption.type();
+        final Object newValue;
+        if (value != null) {
+            newValue = value;
+        } else if (type == Boolean.class) {
+            newValue = Boolean.FALSE;
+        } else {
+            newValue = Integer.valueOf(0);
+        }
+        channel.setOption(socketOption, type.cast(newValue));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> SocketOption<T> find(final String className, final String fieldName, final Class<T> type) {
+        return AccessController.doPrivileged(new PrivilegedAction<SocketOption<T>>() {
+            public SocketOption<T> run() {
+                try {
+                    final Object option = Class.forName(className, true, NioSocketOptions.class.getClassLoader()).getField(fieldName).get(null);
+                    if (option instanceof SocketOption && ((SocketOption<?>) option).type() == type) {
+                        return (SocketOption<T>) option;
+                    }
+                } catch (Throwable t) {
+                    log.tracef("Socket option %s.%s is not available (%s)", className, fieldName, t);
+                }
+                return null;
+            }
+        });
+    }
+}
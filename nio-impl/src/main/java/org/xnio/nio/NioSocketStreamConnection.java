@@ -40,7 +40,8 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
     NioSocketStreamConnection(final WorkerThread workerThread, final SelectionKey key, final NioTcpServerHandle serverConduit) {
         super(workerThread);
         conduit = new NioSocketConduit(workerThread, key, this);
-        key.attach(conduit);
+        conduit.attach();
+        workerThread.connectionOpened();
         this.serverConduit = serverConduit;
         setSinkConduit(conduit);
         setSourceConduit(conduit);
@@ -58,23 +59,36 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
 
     private static final Set<Option<?>> OPTIONS = Option.setBuilder()
             .add(Options.CLOSE_ABORT)
+            .add(Options.CORK)
+            .add(Options.IO_EVENT_BUDGET)
             .add(Options.IP_TRAFFIC_CLASS)
             .add(Options.KEEP_ALIVE)
+            .add(Options.READ_AHEAD)
+            .add(Options.READ_AHEAD_BUDGET)
             .add(Options.READ_TIMEOUT)
             .add(Options.RECEIVE_BUFFER)
             .add(Options.SEND_BUFFER)
             .add(Options.TCP_NODELAY)
             .add(Options.TCP_OOB_INLINE)
+            .add(Options.WRITE_COALESCING)
             .add(Options.WRITE_TIMEOUT)
             .create();
 
     public boolean supportsOption(final Option<?> option) {
-        return OPTIONS.contains(option);
+        return OPTIONS.contains(option) || option == Options.TCP_QUICKACK && NioSocketOptions.isSupported(conduit.getSocketChannel(), option);
     }
 
     public <T> T getOption(final Option<T> option) throws IOException {
         if (option == Options.CLOSE_ABORT) {
             return option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getSoLinger() == 0));
+        } else if (option == Options.CORK) {
+            return option.cast(Boolean.valueOf(conduit.isCorked()));
+        } else if (option == Options.IO_EVENT_BUDGET) {
+            return option.cast(Integer.valueOf(conduit.getIoEventBudget()));
+        } else if (option == Options.READ_AHEAD) {
+            return option.cast(Boolean.valueOf(conduit.isReadAhead()));
+        } else if (option == Options.READ_AHEAD_BUDGET) {
+            return option.cast(Integer.valueOf(conduit.getReadAheadBudget()));
         } else if (option == Options.IP_TRAFFIC_CLASS) {
             return option.cast(Integer.valueOf(conduit.getSocketChannel().socket().getTrafficClass()));
         } else if (option == Options.KEEP_ALIVE) {
@@ -89,8 +103,12 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
             return option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getTcpNoDelay()));
         } else if (option == Options.TCP_OOB_INLINE) {
             return option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getOOBInline()));
+        } else if (option == Options.WRITE_COALESCING) {
+            return option.cast(Boolean.valueOf(conduit.isWriteCoalescing()));
         } else if (option == Options.WRITE_TIMEOUT) {
             return option.cast(Integer.valueOf(conduit.getWriteTimeout()));
+        } else if (option == Options.TCP_QUICKACK) {
+            return NioSocketOptions.getOption(conduit.getSocketChannel(), option);
         } else {
             return null;
         }
@@ -101,6 +119,14 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
         if (option == Options.CLOSE_ABORT) {
             result = option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getSoLinger() == 0));
             conduit.getSocketChannel().socket().setSoLinger(Options.CLOSE_ABORT.cast(value, Boolean.FALSE).booleanValue(), 0);
+        } else if (option == Options.CORK) {
+            result = option.cast(Boolean.valueOf(conduit.getAndSetCork(Options.CORK.cast(value, Boolean.FALSE).booleanValue())));
+        } else if (option == Options.IO_EVENT_BUDGET) {
+            result = option.cast(Integer.valueOf(conduit.getAndSetIoEventBudget(Options.IO_EVENT_BUDGET.cast(value, Integer.valueOf(0)).intValue())));
+        } else if (option == Options.READ_AHEAD) {
+            result = option.cast(Boolean.valueOf(conduit.getAndSetReadAhead(Options.READ_AHEAD.cast(value, Boolean.FALSE).booleanValue())));
+        } else if (option == Options.READ_AHEAD_BUDGET) {
+            result = option.cast(Integer.valueOf(conduit.getAndSetReadAheadBudget(Options.READ_AHEAD_BUDGET.cast(value, Integer.valueOf(NioSocketConduit.DEFAULT_READ_AHEAD_BUDGET)).intValue())));
         } else if (option == Options.IP_TRAFFIC_CLASS) {
             result = option.cast(Integer.valueOf(conduit.getSocketChannel().socket().getTrafficClass()));
             conduit.getSocketChannel().socket().setTrafficClass(Options.IP_TRAFFIC_CLASS.cast(value).intValue());
@@ -121,8 +147,12 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
         } else if (option == Options.TCP_OOB_INLINE) {
             result = option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getOOBInline()));
             conduit.getSocketChannel().socket().setOOBInline(Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue());
+        } else if (option == Options.WRITE_COALESCING) {
+            result = option.cast(Boolean.valueOf(conduit.getAndSetWriteCoalescing(Options.WRITE_COALESCING.cast(value, Boolean.FALSE).booleanValue())));
         } else if (option == Options.WRITE_TIMEOUT) {
             result = option.cast(Integer.valueOf(conduit.getAndSetWriteTimeout(value == null ? 0 : Options.WRITE_TIMEOUT.cast(value).intValue())));
+        } else if (option == Options.TCP_QUICKACK) {
+            result = NioSocketOptions.setOption(conduit.getSocketChannel(), option, value);
         } else {
             return null;
         }
@@ -131,10 +161,12 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
 
     protected void closeAction() throws IOException {
         try {
+            conduit.cancelTimeouts();
             conduit.getWorkerThread().cancelKey(conduit.getSelectionKey());
             conduit.getSocketChannel().close();
         } catch (ClosedChannelException ignored) {
         } finally {
+            this.conduit.getWorkerThread().connectionClosed();
             final NioTcpServerHandle conduit = this.serverConduit;
             if (conduit!= null) conduit.channelClosed();
         }
@@ -148,6 +180,13 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
         conduit.readTerminated();
     }
 
+    void timedOut() {
+        final NioTcpServerHandle conduit = serverConduit;
+        if (conduit != null) {
+            conduit.connectionTimedOut();
+        }
+    }
+
     SocketChannel getChannel() {
         return conduit.getSocketChannel();
     }
@@ -27,15 +27,16 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.jboss.logging.Logger;
+import org.xnio.IoThreadSelection;
 import org.xnio.IoUtils;
 import org.xnio.Option;
 import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
 import org.xnio.OptionMap;
 import org.xnio.Options;
 import org.xnio.StreamConnection;
@@ -57,6 +58,18 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     private final NioTcpServerHandle[] handles;
 
     private final ServerSocketChannel channel;
+    /**
+     * The listening channels; more than one if each thread has its own ({@link Options#REUSE_PORT}).
+     */
+    private final ServerSocketChannel[] channels;
+    /**
+     * The channel each thread accepts from, by thread number.
+     */
+    private final ServerSocketChannel[] acceptChannels;
+    /**
+     * The connections handed off to each I/O thread by number, or {@code null} if the I/O threads accept for themselves.
+     */
+    private final Handoff[] handoffs;
     private final ServerSocket socket;
     private final Closeable mbeanHandle;
 
@@ -67,10 +80,20 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             .add(Options.KEEP_ALIVE)
             .add(Options.TCP_OOB_INLINE)
             .add(Options.TCP_NODELAY)
+            .add(Options.CORK)
+            .add(Options.WRITE_COALESCING)
+            .add(Options.READ_AHEAD)
+            .add(Options.READ_AHEAD_BUDGET)
+            .add(Options.IO_EVENT_BUDGET)
             .add(Options.CONNECTION_HIGH_WATER)
             .add(Options.CONNECTION_LOW_WATER)
             .add(Options.READ_TIMEOUT)
             .add(Options.WRITE_TIMEOUT)
+            .add(Options.REUSE_PORT)
+            .add(Options.ACCEPT_BATCH_SIZE)
+            .add(Options.ACCEPT_IO_THREAD_SELECTION)
+            .add(Options.ACCEPT_RATE_LIMIT)
+            .add(Options.ACCEPT_RATE_BURST)
             .create();
 
     @SuppressWarnings("unused")
@@ -79,6 +102,15 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     private volatile int oobInline;
     @SuppressWarnings("unused")
     private volatile int tcpNoDelay;
+    private volatile boolean cork;
+    private volatile boolean writeCoalescing;
+    private volatile boolean readAhead;
+    private volatile int readAheadBudget = NioSocketConduit.DEFAULT_READ_AHEAD_BUDGET;
+    private volatile int ioEventBudget;
+    /**
+     * Quick acknowledgement for accepted connections: {@code -1} if not set (or not supported), otherwise {@code 0} or {@code 1}.
+     */
+    private volatile int tcpQuickAck = -1;
     @SuppressWarnings("unused")
     private volatile int sendBuffer = -1;
     @SuppressWarnings("unused")
@@ -88,6 +120,24 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     @SuppressWarnings("unused")
     private volatile int writeTimeout;
     private volatile int tokenConnectionCount;
+    private volatile int acceptBatchSize;
+    /**
+     * How accepted connections are placed on I/O threads, or {@code null} to keep them on the accepting thread.
+     */
+    private volatile IoThreadSelection placement;
+    /**
+     * The accept rate limit in connections per second, or {@code 0} for no limit.
+     */
+    private volatile int acceptRateLimit;
+    /**
+     * The accept burst size, or {@code 0} for one second's worth of connections.
+     */
+    private volatile int acceptRateBurst;
+    /**
+     * The number of accepted connections which hit their read or write timeout.
+     */
+    @SuppressWarnings("unused")
+    private volatile long timedOutConnections;
     volatile boolean resumed;
 
     private static final long CONN_LOW_MASK     = 0x000000007FFFFFFFL;
@@ -107,16 +157,37 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     private static final AtomicIntegerFieldUpdater<NioTcpServer> writeTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "writeTimeout");
 
     private static final AtomicLongFieldUpdater<NioTcpServer> connectionStatusUpdater = AtomicLongFieldUpdater.newUpdater(NioTcpServer.class, "connectionStatus");
+    private static final AtomicLongFieldUpdater<NioTcpServer> timedOutConnectionsUpdater = AtomicLongFieldUpdater.newUpdater(NioTcpServer.class, "timedOutConnections");
 
-    NioTcpServer(final NioXnioWorker worker, final ServerSocketChannel channel, final OptionMap optionMap) throws IOException {
+    NioTcpServer(final NioXnioWorker worker, final ServerSocketChannel[] channels, final OptionMap optionMap) throws IOException {
         super(worker);
-        this.channel = channel;
-        final WorkerThread[] threads = worker.getAll();
-        final int threadCount = threads.length;
-        if (threadCount == 0) {
+        this.channels = channels;
+        channel = channels[0];
+        final WorkerThread[] ioThreads = worker.getAll();
+        if (ioThreads.length == 0) {
             throw log.noThreads();
         }
-        final int tokens = optionMap.get(Options.BALANCING_TOKENS, -1);
+        final WorkerThread[] acceptThreads = worker.getAcceptThreads();
+        final WorkerThread[] threads;
+        if (acceptThreads.length > 0) {
+            threads = acceptThreads;
+            final Handoff[] handoffs = new Handoff[ioThreads.length];
+            for (int i = 0; i < ioThreads.length; i ++) {
+                handoffs[i] = new Handoff(ioThreads[i]);
+            }
+            this.handoffs = handoffs;
+        } else {
+            threads = ioThreads;
+            handoffs = null;
+        }
+        final int threadCount = threads.length;
+        assert channels.length == 1 || channels.length == threadCount;
+        acceptChannels = new ServerSocketChannel[threadCount];
+        for (int i = 0; i < threadCount; i ++) {
+            acceptChannels[i] = channels[channels.length == 1 ? 0 : i];
+        }
+        // with a socket per thread, the kernel does the balancing; accept threads need no balancing at all
+        final int tokens = channels.length == 1 && handoffs == null ? optionMap.get(Options.BALANCING_TOKENS, -1) : -1;
         final int connections = optionMap.get(Options.BALANCING_CONNECTIONS, 16);
         if (tokens != -1) {
             if (tokens < 1 || tokens >= threadCount) {
@@ -144,12 +215,58 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         if (optionMap.contains(Options.TCP_NODELAY)) {
             tcpNoDelayUpdater.lazySet(this, optionMap.get(Options.TCP_NODELAY, false) ? 1 : 0);
         }
+        cork = optionMap.get(Options.CORK, false);
+        writeCoalescing = optionMap.get(Options.WRITE_COALESCING, false);
+        readAhead = optionMap.get(Options.READ_AHEAD, false);
+        if (optionMap.contains(Options.READ_AHEAD_BUDGET)) {
+            final int budget = optionMap.get(Options.READ_AHEAD_BUDGET, 0);
+            if (budget < 1) {
+                throw log.optionOutOfRange("READ_AHEAD_BUDGET");
+            }
+            readAheadBudget = budget;
+        }
+        if (optionMap.contains(Options.IO_EVENT_BUDGET)) {
+            final int budget = optionMap.get(Options.IO_EVENT_BUDGET, 0);
+            if (budget < 0) {
+                throw log.optionOutOfRange("IO_EVENT_BUDGET");
+            }
+            ioEventBudget = budget;
+        }
+        if (optionMap.contains(Options.TCP_QUICKACK)) {
+            if (NioSocketOptions.isSupportedByStreams(Options.TCP_QUICKACK)) {
+                tcpQuickAck = optionMap.get(Options.TCP_QUICKACK, false) ? 1 : 0;
+            } else {
+                tcpServerLog.debugf("Ignoring option %s, which is not supported on this platform", Options.TCP_QUICKACK);
+            }
+        }
         if (optionMap.contains(Options.READ_TIMEOUT)) {
             readTimeoutUpdater.lazySet(this, optionMap.get(Options.READ_TIMEOUT, 0));
         }
         if (optionMap.contains(Options.WRITE_TIMEOUT)) {
             writeTimeoutUpdater.lazySet(this, optionMap.get(Options.WRITE_TIMEOUT, 0));
         }
+        if (optionMap.contains(Options.ACCEPT_BATCH_SIZE)) {
+            final int batchSize = optionMap.get(Options.ACCEPT_BATCH_SIZE, 0);
+            if (batchSize < 1) {
+                throw log.optionOutOfRange("ACCEPT_BATCH_SIZE");
+            }
+            acceptBatchSize = batchSize;
+        }
+        placement = optionMap.get(Options.ACCEPT_IO_THREAD_SELECTION);
+        if (optionMap.contains(Options.ACCEPT_RATE_LIMIT)) {
+            final int rateLimit = optionMap.get(Options.ACCEPT_RATE_LIMIT, 0);
+            if (rateLimit < 1) {
+                throw log.optionOutOfRange("ACCEPT_RATE_LIMIT");
+            }
+            acceptRateLimit = rateLimit;
+        }
+        if (optionMap.contains(Options.ACCEPT_RATE_BURST)) {
+            final int rateBurst = optionMap.get(Options.ACCEPT_RATE_BURST, 0);
+            if (rateBurst < 1) {
+                throw log.optionOutOfRange("ACCEPT_RATE_BURST");
+            }
+            acceptRateBurst = rateBurst;
+        }
         int perThreadLow, perThreadLowRem;
         int perThreadHigh, perThreadHighRem;
         if (optionMap.contains(Options.CONNECTION_HIGH_WATER) || optionMap.contains(Options.CONNECTION_LOW_WATER)) {
@@ -176,11 +293,17 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         }
         final NioTcpServerHandle[] handles = new NioTcpServerHandle[threadCount];
         for (int i = 0, length = threadCount; i < length; i++) {
-            final SelectionKey key = threads[i].registerChannel(channel);
+            final SelectionKey key = threads[i].registerChannel(acceptChannels[i]);
             handles[i] = new NioTcpServerHandle(this, key, threads[i], i < perThreadHighRem ? perThreadHigh + 1 : perThreadHigh, i < perThreadLowRem ? perThreadLow + 1 : perThreadLow);
-            key.attach(handles[i]);
+            handles[i].attach();
         }
         this.handles = handles;
+        if (acceptRateLimit != 0) {
+            // accepts are not resumed yet, so the handles can be set up directly
+            for (int i = 0; i < threadCount; i ++) {
+                handles[i].setRateLimit(getRateLimit(i), getRateBurst(i));
+            }
+        }
         if (tokens > 0) {
             for (int i = 0; i < threadCount; i ++) {
                 handles[i].initializeTokenCount(i < tokens ? connections : 0);
@@ -200,22 +323,11 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             }
 
             public int getConnectionCount() {
-                final AtomicInteger counter = new AtomicInteger();
-                final CountDownLatch latch = new CountDownLatch(handles.length);
-                for (final NioTcpServerHandle handle : handles) {
-                    handle.getWorkerThread().execute(new Runnable() {
-                        public void run() {
-                            counter.getAndAdd(handle.getConnectionCount());
-                            latch.countDown();
-                        }
-                    });
-                }
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                int count = 0;
+                for (NioTcpServerHandle handle : handles) {
+                    count += handle.getConnectionCount();
                 }
-                return counter.get();
+                return count;
             }
 
             public int getConnectionLimitHighWater() {
@@ -225,9 +337,66 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             public int getConnectionLimitLowWater() {
                 return getLowWater(connectionStatus);
             }
+
+            public long getAcceptCount() {
+                long count = 0L;
+                for (NioTcpServerHandle handle : handles) {
+                    count += handle.getAcceptCount();
+                }
+                return count;
+            }
+
+            public long getAcceptWakeupCount() {
+                long count = 0L;
+                for (NioTcpServerHandle handle : handles) {
+                    count += handle.getAcceptWakeupCount();
+                }
+                return count;
+            }
+
+            public int getMaxAcceptsPerWakeup() {
+                int max = 0;
+                for (NioTcpServerHandle handle : handles) {
+                    max = Math.max(max, handle.getMaxAcceptsPerWakeup());
+                }
+                return max;
+            }
+
+            public long getAcceptRate() {
+                final long now = System.nanoTime();
+                long rate = 0L;
+                for (NioTcpServerHandle handle : handles) {
+                    rate += handle.getAcceptRate(now);
+                }
+                return rate;
+            }
+
+            public long getAcceptThrottledTime() {
+                long time = 0L;
+                for (NioTcpServerHandle handle : handles) {
+                    time += handle.getThrottledTime();
+                }
+                return TimeUnit.NANOSECONDS.toMillis(time);
+            }
+
+            public long getRejectedAcceptCount() {
+                long count = 0L;
+                for (NioTcpServerHandle handle : handles) {
+                    count += handle.getRejectedAcceptCount();
+                }
+                return count;
+            }
+
+            public long getTimedOutConnectionCount() {
+                return timedOutConnections;
+            }
         });
     }
 
+    void connectionTimedOut() {
+        timedOutConnectionsUpdater.incrementAndGet(this);
+    }
+
     private static IllegalArgumentException badLowWater(final int highWater) {
         return new IllegalArgumentException("Low water must be greater than 0 and less than or equal to high water (" + highWater + ")");
     }
@@ -238,16 +407,29 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
 
     public void close() throws IOException {
         try {
+            for (int i = 1; i < channels.length; i ++) {
+                safeClose(channels[i]);
+            }
             channel.close();
         } finally {
             for (NioTcpServerHandle handle : handles) {
                 handle.getWorkerThread().cancelKey(handle.getSelectionKey());
             }
             safeClose(mbeanHandle);
+            if (handoffs != null) {
+                for (Handoff handoff : handoffs) {
+                    handoff.clear();
+                }
+            }
         }
     }
 
     public boolean supportsOption(final Option<?> option) {
+        if (option == Options.TCP_QUICKACK) {
+            return NioSocketOptions.isSupportedByStreams(option);
+        } else if (option == Options.TCP_FASTOPEN || option == Options.TCP_DEFER_ACCEPT) {
+            return NioSocketOptions.isSupported(channel, option);
+        }
         return options.contains(option);
     }
 
@@ -265,6 +447,16 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             return option.cast(Boolean.valueOf(oobInline != 0));
         } else if (option == Options.TCP_NODELAY) {
             return option.cast(Boolean.valueOf(tcpNoDelay != 0));
+        } else if (option == Options.CORK) {
+            return option.cast(Boolean.valueOf(cork));
+        } else if (option == Options.WRITE_COALESCING) {
+            return option.cast(Boolean.valueOf(writeCoalescing));
+        } else if (option == Options.READ_AHEAD) {
+            return option.cast(Boolean.valueOf(readAhead));
+        } else if (option == Options.READ_AHEAD_BUDGET) {
+            return option.cast(Integer.valueOf(readAheadBudget));
+        } else if (option == Options.IO_EVENT_BUDGET) {
+            return option.cast(Integer.valueOf(ioEventBudget));
         } else if (option == Options.READ_TIMEOUT) {
             return option.cast(Integer.valueOf(readTimeout));
         } else if (option == Options.WRITE_TIMEOUT) {
@@ -273,6 +465,24 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             return option.cast(Integer.valueOf(getHighWater(connectionStatus)));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             return option.cast(Integer.valueOf(getLowWater(connectionStatus)));
+        } else if (option == Options.REUSE_PORT) {
+            return option.cast(Boolean.valueOf(channels.length > 1));
+        } else if (option == Options.ACCEPT_BATCH_SIZE) {
+            final int value = acceptBatchSize;
+            return value == 0 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.ACCEPT_IO_THREAD_SELECTION) {
+            return option.cast(placement);
+        } else if (option == Options.TCP_QUICKACK) {
+            final int value = tcpQuickAck;
+            return value == -1 ? null : option.cast(Boolean.valueOf(value != 0));
+        } else if (option == Options.TCP_FASTOPEN || option == Options.TCP_DEFER_ACCEPT) {
+            return NioSocketOptions.getOption(channel, option);
+        } else if (option == Options.ACCEPT_RATE_LIMIT) {
+            final int value = acceptRateLimit;
+            return value == 0 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.ACCEPT_RATE_BURST) {
+            final int value = acceptRateBurst;
+            return value == 0 ? null : option.cast(Integer.valueOf(value));
         } else {
             return null;
         }
@@ -282,14 +492,19 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         final Object old;
         if (option == Options.REUSE_ADDRESSES) {
             old = Boolean.valueOf(socket.getReuseAddress());
-            socket.setReuseAddress(Options.REUSE_ADDRESSES.cast(value, Boolean.FALSE).booleanValue());
+            final boolean newValue = Options.REUSE_ADDRESSES.cast(value, Boolean.FALSE).booleanValue();
+            for (ServerSocketChannel channel : channels) {
+                channel.socket().setReuseAddress(newValue);
+            }
         } else if (option == Options.RECEIVE_BUFFER) { 
             old = Integer.valueOf(socket.getReceiveBufferSize());
             final int newValue = Options.RECEIVE_BUFFER.cast(value, Integer.valueOf(DEFAULT_BUFFER_SIZE)).intValue();
             if (newValue < 1) {
                 throw log.optionOutOfRange("RECEIVE_BUFFER");
             }
-            socket.setReceiveBufferSize(newValue);
+            for (ServerSocketChannel channel : channels) {
+                channel.socket().setReceiveBufferSize(newValue);
+            }
         } else if (option == Options.SEND_BUFFER) {
             final int newValue = Options.SEND_BUFFER.cast(value, Integer.valueOf(DEFAULT_BUFFER_SIZE)).intValue();
             if (newValue < 1) {
@@ -303,6 +518,29 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             old = Boolean.valueOf(oobInlineUpdater.getAndSet(this, Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
         } else if (option == Options.TCP_NODELAY) {
             old = Boolean.valueOf(tcpNoDelayUpdater.getAndSet(this, Options.TCP_NODELAY.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+        } else if (option == Options.CORK) {
+            old = Boolean.valueOf(cork);
+            cork = Options.CORK.cast(value, Boolean.FALSE).booleanValue();
+        } else if (option == Options.WRITE_COALESCING) {
+            old = Boolean.valueOf(writeCoalescing);
+            writeCoalescing = Options.WRITE_COALESCING.cast(value, Boolean.FALSE).booleanValue();
+        } else if (option == Options.READ_AHEAD) {
+            old = Boolean.valueOf(readAhead);
+            readAhead = Options.READ_AHEAD.cast(value, Boolean.FALSE).booleanValue();
+        } else if (option == Options.READ_AHEAD_BUDGET) {
+            final int budget = Options.READ_AHEAD_BUDGET.cast(value, Integer.valueOf(NioSocketConduit.DEFAULT_READ_AHEAD_BUDGET)).intValue();
+            if (budget < 1) {
+                throw log.optionOutOfRange("READ_AHEAD_BUDGET");
+            }
+            old = Integer.valueOf(readAheadBudget);
+            readAheadBudget = budget;
+        } else if (option == Options.IO_EVENT_BUDGET) {
+            final int budget = Options.IO_EVENT_BUDGET.cast(value, Integer.valueOf(0)).intValue();
+            if (budget < 0) {
+                throw log.optionOutOfRange("IO_EVENT_BUDGET");
+            }
+            old = Integer.valueOf(ioEventBudget);
+            ioEventBudget = budget;
         } else if (option == Options.READ_TIMEOUT) {
             old = Integer.valueOf(readTimeoutUpdater.getAndSet(this, Options.READ_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
         } else if (option == Options.WRITE_TIMEOUT) {
@@ -311,6 +549,50 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             old = Integer.valueOf(getHighWater(updateWaterMark(-1, Options.CONNECTION_HIGH_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue())));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             old = Integer.valueOf(getLowWater(updateWaterMark(Options.CONNECTION_LOW_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue(), -1)));
+        } else if (option == Options.ACCEPT_BATCH_SIZE) {
+            final int newValue = Options.ACCEPT_BATCH_SIZE.cast(value, Integer.valueOf(0)).intValue();
+            if (newValue < 0) {
+                throw log.optionOutOfRange("ACCEPT_BATCH_SIZE");
+            }
+            final int oldValue = acceptBatchSize;
+            acceptBatchSize = newValue;
+            old = oldValue == 0 ? null : Integer.valueOf(oldValue);
+        } else if (option == Options.ACCEPT_IO_THREAD_SELECTION) {
+            old = placement;
+            placement = Options.ACCEPT_IO_THREAD_SELECTION.cast(value);
+        } else if (option == Options.TCP_QUICKACK) {
+            if (! NioSocketOptions.isSupportedByStreams(option)) {
+                return null;
+            }
+            final int oldValue = tcpQuickAck;
+            tcpQuickAck = value == null ? -1 : Options.TCP_QUICKACK.cast(value).booleanValue() ? 1 : 0;
+            old = oldValue == -1 ? null : Boolean.valueOf(oldValue != 0);
+        } else if (option == Options.TCP_FASTOPEN || option == Options.TCP_DEFER_ACCEPT) {
+            if (! NioSocketOptions.isSupported(channel, option)) {
+                return null;
+            }
+            old = NioSocketOptions.setOption(channel, option, value);
+            for (int i = 1; i < channels.length; i ++) {
+                NioSocketOptions.setOption(channels[i], option, value);
+            }
+        } else if (option == Options.ACCEPT_RATE_LIMIT) {
+            final int newValue = Options.ACCEPT_RATE_LIMIT.cast(value, Integer.valueOf(0)).intValue();
+            if (newValue < 0) {
+                throw log.optionOutOfRange("ACCEPT_RATE_LIMIT");
+            }
+            final int oldValue = acceptRateLimit;
+            acceptRateLimit = newValue;
+            old = oldValue == 0 ? null : Integer.valueOf(oldValue);
+            updateRateLimits();
+        } else if (option == Options.ACCEPT_RATE_BURST) {
+            final int newValue = Options.ACCEPT_RATE_BURST.cast(value, Integer.valueOf(0)).intValue();
+            if (newValue < 0) {
+                throw log.optionOutOfRange("ACCEPT_RATE_BURST");
+            }
+            final int oldValue = acceptRateBurst;
+            acceptRateBurst = newValue;
+            old = oldValue == 0 ? null : Integer.valueOf(oldValue);
+            updateRateLimits();
         } else {
             return null;
         }
@@ -365,6 +647,34 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         return oldVal;
     }
 
+    private void updateRateLimits() {
+        final NioTcpServerHandle[] handles = this.handles;
+        for (int i = 0; i < handles.length; i ++) {
+            handles[i].executeSetRateLimit(getRateLimit(i), getRateBurst(i));
+        }
+    }
+
+    /**
+     * Get the share of the accept rate limit of the given handle, which is at least one connection per second.
+     */
+    private long getRateLimit(final int index) {
+        final int rateLimit = acceptRateLimit;
+        if (rateLimit == 0) {
+            return 0L;
+        }
+        final int threadCount = handles.length;
+        return Math.max(1, rateLimit / threadCount + (index < rateLimit % threadCount ? 1 : 0));
+    }
+
+    private long getRateBurst(final int index) {
+        final int rateBurst = acceptRateBurst;
+        if (rateBurst == 0) {
+            return Math.max(1L, getRateLimit(index));
+        }
+        final int threadCount = handles.length;
+        return Math.max(1, rateBurst / threadCount + (index < rateBurst % threadCount ? 1 : 0));
+    }
+
     private static int getHighWater(final long value) {
         return (int) ((value & CONN_HIGH_MASK) >> CONN_HIGH_BIT);
     }
@@ -375,26 +685,22 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
 
     public NioSocketStreamConnection accept() throws IOException {
         final WorkerThread current = WorkerThread.getCurrent();
+        if (handoffs != null) {
+            return acceptHandedOff(current);
+        }
         final NioTcpServerHandle handle = handles[current.getNumber()];
-        if (! handle.getConnection()) {
+        if (! handle.acceptAllowed(acceptBatchSize) || ! handle.getConnection()) {
             return null;
         }
         final SocketChannel accepted;
         boolean ok = false;
         try {
-            accepted = channel.accept();
+            accepted = acceptChannels[current.getNumber()].accept();
             if (accepted != null) try {
-                accepted.configureBlocking(false);
-                final Socket socket = accepted.socket();
-                socket.setKeepAlive(keepAlive != 0);
-                socket.setOOBInline(oobInline != 0);
-                socket.setTcpNoDelay(tcpNoDelay != 0);
-                final int sendBuffer = this.sendBuffer;
-                if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
-                final SelectionKey selectionKey = current.registerChannel(accepted);
-                final NioSocketStreamConnection newConnection = new NioSocketStreamConnection(current, selectionKey, handle);
-                newConnection.setOption(Options.READ_TIMEOUT, Integer.valueOf(readTimeout));
-                newConnection.setOption(Options.WRITE_TIMEOUT, Integer.valueOf(writeTimeout));
+                final IoThreadSelection placement = this.placement;
+                final WorkerThread target = placement == null ? current : worker.chooseThread(placement);
+                final NioSocketStreamConnection newConnection = newConnection(accepted, target, handle);
+                handle.accepted();
                 ok = true;
                 return newConnection;
             } finally {
@@ -411,6 +717,109 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         return null;
     }
 
+    /**
+     * Take a connection which an accept thread handed off to the current I/O thread.
+     *
+     * @param current the current I/O thread
+     * @return the connection, or {@code null} if none is pending
+     */
+    private NioSocketStreamConnection acceptHandedOff(final WorkerThread current) {
+        final int number = current == null ? -1 : current.getNumber();
+        if (number < 0 || number >= handoffs.length || handoffs[number].thread != current) {
+            // not an I/O thread of this worker
+            return null;
+        }
+        final Handoff handoff = handoffs[number];
+        Pending pending;
+        while ((pending = handoff.poll()) != null) {
+            boolean ok = false;
+            try {
+                final NioSocketStreamConnection newConnection = newConnection(pending.channel, current, pending.handle);
+                ok = true;
+                return newConnection;
+            } catch (IOException e) {
+                tcpServerLog.tracef(e, "Failed to set up handed off connection on %s", this);
+            } finally {
+                if (! ok) {
+                    safeClose(pending.channel);
+                    pending.handle.channelClosed();
+                }
+            }
+        }
+        return null;
+    }
+
+    private NioSocketStreamConnection newConnection(final SocketChannel accepted, final WorkerThread thread, final NioTcpServerHandle handle) throws IOException {
+        accepted.configureBlocking(false);
+        final Socket socket = accepted.socket();
+        socket.setKeepAlive(keepAlive != 0);
+        socket.setOOBInline(oobInline != 0);
+        socket.setTcpNoDelay(tcpNoDelay != 0);
+        final int sendBuffer = this.sendBuffer;
+        if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
+        final int tcpQuickAck = this.tcpQuickAck;
+        if (tcpQuickAck != -1) accepted.setOption(NioSocketOptions.TCP_QUICKACK, Boolean.valueOf(tcpQuickAck != 0));
+        final SelectionKey selectionKey = thread.registerChannel(accepted);
+        final NioSocketStreamConnection newConnection = new NioSocketStreamConnection(thread, selectionKey, handle);
+        newConnection.setOption(Options.READ_TIMEOUT, Integer.valueOf(readTimeout));
+        newConnection.setOption(Options.WRITE_TIMEOUT, Integer.valueOf(writeTimeout));
+        final NioSocketConduit conduit = newConnection.getConduit();
+        conduit.getAndSetCork(cork);
+        conduit.getAndSetWriteCoalescing(writeCoalescing);
+        conduit.getAndSetReadAhead(readAhead);
+        conduit.getAndSetReadAheadBudget(readAheadBudget);
+        conduit.getAndSetIoEventBudget(ioEventBudget);
+        return newConnection;
+    }
+
+    /**
+     * Accept connections on an accept thread and hand each one to an I/O thread, whose accept listener invocation then
+     * sets it up.  Called by the handle when its channel is ready.
+     *
+     * @param handle the ready handle
+     */
+    void handOff(final NioTcpServerHandle handle) {
+        if (acceptListener == null) {
+            // nobody would take the connection
+            return;
+        }
+        final ServerSocketChannel acceptChannel = acceptChannels[handle.getWorkerThread().getNumber()];
+        final int batchSize = acceptBatchSize;
+        while (handle.acceptAllowed(batchSize) && handle.getConnection()) {
+            final SocketChannel accepted;
+            try {
+                accepted = acceptChannel.accept();
+            } catch (IOException e) {
+                tcpServerLog.tracef(e, "Accept failed on %s", this);
+                handle.freeConnection();
+                return;
+            }
+            if (accepted == null) {
+                handle.freeConnection();
+                return;
+            }
+            handle.accepted();
+            boolean ok = false;
+            try {
+                final IoThreadSelection placement = this.placement;
+                final WorkerThread target = placement == null ? worker.chooseThread() : worker.chooseThread(placement);
+                final Handoff handoff = handoffs[target.getNumber()];
+                handoff.offer(new Pending(accepted, handle));
+                target.execute(handoff);
+                ok = true;
+            } finally {
+                if (! ok) {
+                    safeClose(accepted);
+                    handle.freeConnection();
+                }
+            }
+        }
+    }
+
+    boolean isHandingOff() {
+        return handoffs != null;
+    }
+
     public String toString() {
         return String.format("TCP server (NIO) <%s>", Integer.toHexString(hashCode()));
     }
@@ -494,4 +903,56 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     int getTokenConnectionCount() {
         return tokenConnectionCount;
     }
+
+    int getAcceptBatchSize() {
+        return acceptBatchSize;
+    }
+
+    /**
+     * A connection accepted by an accept thread which has not yet been taken by an I/O thread.
+     */
+    static final class Pending {
+        final SocketChannel channel;
+        final NioTcpServerHandle handle;
+
+        Pending(final SocketChannel channel, final NioTcpServerHandle handle) {
+            this.channel = channel;
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * The connections handed off to one I/O thread.  Running it invokes the accept listener on that thread if a
+     * connection is waiting.
+     */
+    final class Handoff implements Runnable {
+        final WorkerThread thread;
+        private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<Pending>();
+
+        Handoff(final WorkerThread thread) {
+            this.thread = thread;
+        }
+
+        void offer(final Pending pending) {
+            queue.add(pending);
+        }
+
+        Pending poll() {
+            return queue.poll();
+        }
+
+        void clear() {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                safeClose(pending.channel);
+                pending.handle.channelClosed();
+            }
+        }
+
+        public void run() {
+            if (! queue.isEmpty()) {
+                ChannelListeners.invokeChannelListener(NioTcpServer.this, acceptListener);
+            }
+        }
+    }
 }
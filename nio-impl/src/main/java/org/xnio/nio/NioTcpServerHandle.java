@@ -19,8 +19,11 @@
 package org.xnio.nio;
 
 import java.nio.channels.SelectionKey;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.xnio.ChannelListeners;
 
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
 import static org.xnio.IoUtils.safeClose;
 
@@ -29,13 +32,51 @@ import static org.xnio.IoUtils.safeClose;
 */
 final class NioTcpServerHandle extends NioHandle {
 
+    /**
+     * The size of one accept rate token.  Tokens are earned at the rate limit per nanosecond, so one connection costs
+     * a second's worth of a one-connection-per-second budget.
+     */
+    private static final long TOKEN = 1000000000L;
+    /**
+     * The period over which the accept rate is measured.
+     */
+    private static final long RATE_WINDOW = 1000000000L;
+
     private final Runnable freeTask;
+    private final Runnable unthrottleTask;
     private final NioTcpServer server;
-    private int count;
+    /**
+     * The number of open connections; only written by the handle's thread, but may be read from any thread.
+     */
+    private volatile int count;
     private int low;
     private int high;
     private int tokenCount = -1;
     private boolean stopped;
+    /**
+     * The number of connections accepted during the current readiness event, or {@code -1} outside of one.
+     */
+    private int wakeupAccepts = -1;
+
+    // Accept statistics; only written by the handle's thread
+    private volatile long accepts;
+    private volatile long acceptWakeups;
+    private volatile int maxAcceptsPerWakeup;
+    private volatile long rejectedAccepts;
+
+    // Accept rate limit token bucket; only used by the handle's thread
+    private long rateLimit;
+    private long rateCapacity;
+    private long rateTokens;
+    private long rateRefilled;
+    private boolean throttled;
+    private long throttledSince;
+    private volatile long throttledTime;
+
+    // Accept rate measurement; only written by the handle's thread
+    private volatile long rateWindowStart = nanoTime();
+    private volatile int rateWindowAccepts;
+    private volatile long acceptRate;
 
     NioTcpServerHandle(final NioTcpServer server, final SelectionKey key, final WorkerThread thread, final int low, final int high) {
         super(thread, key);
@@ -47,10 +88,164 @@ final class NioTcpServerHandle extends NioHandle {
                 freeConnection();
             }
         };
+        unthrottleTask = new Runnable() {
+            public void run() {
+                unthrottle();
+            }
+        };
     }
 
     void handleReady(final int ops) {
-        ChannelListeners.invokeChannelListener(server, server.getAcceptListener());
+        final int batchSize = server.getAcceptBatchSize();
+        wakeupAccepts = 0;
+        try {
+            if (server.isHandingOff()) {
+                server.handOff(this);
+            } else if (batchSize == 0) {
+                ChannelListeners.invokeChannelListener(server, server.getAcceptListener());
+            } else {
+                // keep invoking the listener for as long as it makes progress
+                int before;
+                do {
+                    before = wakeupAccepts;
+                    ChannelListeners.invokeChannelListener(server, server.getAcceptListener());
+                } while (wakeupAccepts > before && wakeupAccepts < batchSize && ! stopped && server.resumed && server.isOpen());
+            }
+        } finally {
+            final int accepted = wakeupAccepts;
+            wakeupAccepts = -1;
+            acceptWakeups ++;
+            if (accepted > maxAcceptsPerWakeup) {
+                maxAcceptsPerWakeup = accepted;
+            }
+        }
+    }
+
+    /**
+     * Determine whether another connection may be accepted during the current readiness event.
+     *
+     * @param batchSize the accept batch size, or {@code 0} for no limit
+     * @return {@code true} if a connection may be accepted
+     */
+    boolean acceptAllowed(final int batchSize) {
+        assert currentThread() == getWorkerThread();
+        return batchSize == 0 || wakeupAccepts < batchSize;
+    }
+
+    void accepted() {
+        assert currentThread() == getWorkerThread();
+        accepts ++;
+        if (wakeupAccepts != -1) {
+            wakeupAccepts ++;
+        }
+        if (rateLimit != 0L) {
+            rateTokens -= TOKEN;
+        }
+        final long now = nanoTime();
+        final long elapsed = now - rateWindowStart;
+        if (elapsed >= RATE_WINDOW) {
+            acceptRate = rateWindowAccepts * RATE_WINDOW / elapsed;
+            rateWindowStart = now;
+            rateWindowAccepts = 1;
+        } else {
+            rateWindowAccepts ++;
+        }
+    }
+
+    /**
+     * Determine whether the rate limit allows another connection to be accepted.  If not, accepts are suspended until
+     * enough time has passed to earn the next connection.
+     *
+     * @return {@code true} if a connection may be accepted
+     */
+    private boolean rateAllowed() {
+        final long now = nanoTime();
+        final long room = rateCapacity - rateTokens;
+        if (room > 0L) {
+            final long elapsed = now - rateRefilled;
+            rateTokens += elapsed >= room / rateLimit ? room : elapsed * rateLimit;
+        }
+        rateRefilled = now;
+        if (rateTokens >= TOKEN) {
+            return true;
+        }
+        throttled = true;
+        throttledSince = now;
+        super.suspend(SelectionKey.OP_ACCEPT);
+        final long waitNanos = (TOKEN - rateTokens + rateLimit - 1L) / rateLimit;
+        try {
+            getWorkerThread().executeAfter(unthrottleTask, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999999L)), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // thread is exiting; the server is going away
+        }
+        return false;
+    }
+
+    void unthrottle() {
+        assert currentThread() == getWorkerThread();
+        if (throttled) {
+            throttled = false;
+            throttledTime += nanoTime() - throttledSince;
+            if (! stopped && server.resumed) {
+                super.resume(SelectionKey.OP_ACCEPT);
+            }
+        }
+    }
+
+    /**
+     * Set the accept rate limit of this handle.  Must be called on the handle's thread, or before accepts are resumed.
+     *
+     * @param rate the connections per second, or {@code 0} for no limit
+     * @param burst the number of connections which may be accepted at once
+     */
+    void setRateLimit(final long rate, final long burst) {
+        rateLimit = rate;
+        rateCapacity = burst * TOKEN;
+        rateTokens = rateCapacity;
+        rateRefilled = nanoTime();
+    }
+
+    void executeSetRateLimit(final long rate, final long burst) {
+        final WorkerThread thread = getWorkerThread();
+        if (thread == currentThread()) {
+            setRateLimit(rate, burst);
+            if (throttled && rate == 0L) {
+                unthrottle();
+            }
+        } else {
+            thread.execute(new Runnable() {
+                public void run() {
+                    executeSetRateLimit(rate, burst);
+                }
+            });
+        }
+    }
+
+    long getAcceptRate(final long now) {
+        final long start = rateWindowStart;
+        final int count = rateWindowAccepts;
+        final long elapsed = now - start;
+        if (elapsed >= RATE_WINDOW) {
+            // nothing has been accepted since the window ended
+            return elapsed >= RATE_WINDOW << 1 ? 0L : count * RATE_WINDOW / elapsed;
+        }
+        return acceptRate;
+    }
+
+    long getThrottledTime() {
+        return throttledTime;
+    }
+
+    long getAcceptCount() {
+        return accepts;
+    }
+
+    long getAcceptWakeupCount() {
+        return acceptWakeups;
+    }
+
+    int getMaxAcceptsPerWakeup() {
+        return maxAcceptsPerWakeup;
     }
 
     void forceTermination() {
@@ -68,7 +263,7 @@ final class NioTcpServerHandle extends NioHandle {
     void resume() {
         final WorkerThread thread = getWorkerThread();
         if (thread == currentThread()) {
-            if (! stopped && server.resumed) super.resume(SelectionKey.OP_ACCEPT);
+            if (! stopped && ! throttled && server.resumed) super.resume(SelectionKey.OP_ACCEPT);
         } else {
             thread.execute(new Runnable() {
                 public void run() {
@@ -104,7 +299,7 @@ final class NioTcpServerHandle extends NioHandle {
         assert currentThread() == getWorkerThread();
         if (count-- <= low && tokenCount != 0 && stopped) {
             stopped = false;
-            if (server.resumed) {
+            if (server.resumed && ! throttled) {
                 super.resume(SelectionKey.OP_ACCEPT);
             }
         }
@@ -117,7 +312,7 @@ final class NioTcpServerHandle extends NioHandle {
                 tokenCount = newCount;
                 if (count <= low && stopped) {
                     stopped = false;
-                    if (server.resumed) {
+                    if (server.resumed && ! throttled) {
                         super.resume(SelectionKey.OP_ACCEPT);
                     }
                 }
@@ -157,7 +352,8 @@ final class NioTcpServerHandle extends NioHandle {
 
     boolean getConnection() {
         assert currentThread() == getWorkerThread();
-        if (stopped) {
+        if (stopped || throttled || rateLimit != 0L && ! rateAllowed()) {
+            rejectedAccepts ++;
             return false;
         }
         if (tokenCount != -1 && --tokenCount == 0) {
@@ -192,7 +388,14 @@ final class NioTcpServerHandle extends NioHandle {
     }
 
     int getConnectionCount() {
-        assert currentThread() == getWorkerThread();
         return count;
     }
+
+    long getRejectedAcceptCount() {
+        return rejectedAccepts;
+    }
+
+    void connectionTimedOut() {
+        server.connectionTimedOut();
+    }
 }
@@ -68,7 +68,8 @@ class NioUdpChannel extends AbstractNioChannel<NioUdpChannel> implements Multica
         final WorkerThread workerThread = worker.chooseThread();
         final SelectionKey key = workerThread.registerChannel(datagramChannel);
         handle = new NioUdpChannelHandle(workerThread, key, this);
-        key.attach(handle);
+        handle.attach();
+        workerThread.connectionOpened();
     }
 
     public SocketAddress getLocalAddress() {
@@ -197,6 +198,7 @@ class NioUdpChannel extends AbstractNioChannel<NioUdpChannel> implements Multica
             try {
                 datagramChannel.close();
             } finally {
+                handle.getWorkerThread().connectionClosed();
                 invokeCloseHandler();
             }
         }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.StandardProtocolFamily;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.ServerSocketChannel;
@@ -32,10 +33,12 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.LockSupport;
+import org.xnio.AddressResolver;
 import org.xnio.Bits;
 import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
 import org.xnio.ClosedWorkerException;
+import org.xnio.IoThreadSelection;
 import org.xnio.IoUtils;
 import org.xnio.OptionMap;
 import org.xnio.Options;
@@ -43,6 +46,7 @@ import org.xnio.StreamConnection;
 import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.channels.MulticastMessageChannel;
+import org.xnio.management.XnioIoThreadMXBean;
 import org.xnio.management.XnioWorkerMXBean;
 
 import static org.xnio.IoUtils.safeClose;
@@ -60,7 +64,20 @@ final class NioXnioWorker extends XnioWorker {
     private volatile int state = 1;
 
     private final WorkerThread[] workerThreads;
+    /**
+     * Threads which only accept connections for TCP servers, if any.
+     */
+    private final WorkerThread[] acceptThreads;
+    private final IoThreadSelection threadSelection;
     private final Closeable mbeanHandle;
+    private final Closeable[] threadMBeanHandles;
+    /**
+     * The resolver for unresolved destination addresses, or {@code null} to resolve them on the I/O thread.
+     */
+    private final NioResolver resolver;
+
+    @SuppressWarnings("unused")
+    private volatile int nextThread;
 
     @SuppressWarnings("unused")
     private volatile Thread shutdownWaiter;
@@ -68,6 +85,7 @@ final class NioXnioWorker extends XnioWorker {
     private static final AtomicReferenceFieldUpdater<NioXnioWorker, Thread> shutdownWaiterUpdater = AtomicReferenceFieldUpdater.newUpdater(NioXnioWorker.class, Thread.class, "shutdownWaiter");
 
     private static final AtomicIntegerFieldUpdater<NioXnioWorker> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(NioXnioWorker.class, "state");
+    private static final AtomicIntegerFieldUpdater<NioXnioWorker> nextThreadUpdater = AtomicIntegerFieldUpdater.newUpdater(NioXnioWorker.class, "nextThread");
 
     @SuppressWarnings("deprecation")
     NioXnioWorker(final NioXnio xnio, final ThreadGroup threadGroup, final OptionMap optionMap, final Runnable terminationTask) throws IOException {
@@ -81,6 +99,18 @@ final class NioXnioWorker extends XnioWorker {
         if (threadCount < 0) {
             throw log.optionOutOfRange("WORKER_IO_THREADS");
         }
+        final int acceptThreadCount = optionMap.get(Options.WORKER_ACCEPT_THREADS, 0);
+        if (acceptThreadCount < 0) {
+            throw log.optionOutOfRange("WORKER_ACCEPT_THREADS");
+        }
+        final int resolverCacheTtl = optionMap.get(Options.WORKER_RESOLVER_CACHE_TTL, 30);
+        if (resolverCacheTtl < 0) {
+            throw log.optionOutOfRange("WORKER_RESOLVER_CACHE_TTL");
+        }
+        final int resolverNegativeCacheTtl = optionMap.get(Options.WORKER_RESOLVER_NEGATIVE_CACHE_TTL, 10);
+        if (resolverNegativeCacheTtl < 0) {
+            throw log.optionOutOfRange("WORKER_RESOLVER_NEGATIVE_CACHE_TTL");
+        }
         final long workerStackSize = optionMap.get(Options.STACK_SIZE, 0L);
         if (workerStackSize < 0L) {
             throw log.optionOutOfRange("STACK_SIZE");
@@ -89,26 +119,47 @@ final class NioXnioWorker extends XnioWorker {
         final String workerName = getName();
         WorkerThread[] workerThreads;
         workerThreads = new WorkerThread[threadCount];
+        final WorkerThread[] acceptThreads = new WorkerThread[acceptThreadCount];
         final boolean markWorkerThreadAsDaemon = optionMap.get(Options.THREAD_DAEMON, false);
+        // accept threads only run their own tasks
+        final OptionMap acceptThreadOptionMap = OptionMap.builder().addAll(optionMap).set(Options.WORKER_IO_WORK_STEALING, false).getMap();
         boolean ok = false;
         try {
             for (int i = 0; i < threadCount; i++) {
-                final WorkerThread workerThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s I/O-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i);
+                final WorkerThread workerThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s I/O-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i, optionMap);
                 // Mark as daemon if the Options.THREAD_DAEMON has been set
                 if (markWorkerThreadAsDaemon) {
                     workerThread.setDaemon(true);
                 }
                 workerThreads[i] = workerThread;
             }
+            for (int i = 0; i < acceptThreadCount; i++) {
+                final WorkerThread acceptThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s Accept-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i, acceptThreadOptionMap);
+                if (markWorkerThreadAsDaemon) {
+                    acceptThread.setDaemon(true);
+                }
+                acceptThreads[i] = acceptThread;
+            }
             ok = true;
         } finally {
             if (! ok) {
                 for (WorkerThread worker : workerThreads) {
                     if (worker != null) safeClose(worker.getSelector());
                 }
+                for (WorkerThread worker : acceptThreads) {
+                    if (worker != null) safeClose(worker.getSelector());
+                }
             }
         }
         this.workerThreads = workerThreads;
+        this.acceptThreads = acceptThreads;
+        threadSelection = optionMap.get(Options.WORKER_IO_THREAD_SELECTION, IoThreadSelection.RANDOM);
+        if (optionMap.get(Options.WORKER_RESOLVE_ASYNC, true)) {
+            final AddressResolver addressResolver = optionMap.get(Options.WORKER_RESOLVER);
+            resolver = new NioResolver(addressResolver == null ? AddressResolver.SYSTEM : addressResolver, this, TimeUnit.SECONDS.toNanos(resolverCacheTtl), TimeUnit.SECONDS.toNanos(resolverNegativeCacheTtl));
+        } else {
+            resolver = null;
+        }
         mbeanHandle = NioXnio.register(new XnioWorkerMXBean() {
             public String getProviderName() {
                 return "nio";
@@ -137,6 +188,93 @@ final class NioXnioWorker extends XnioWorker {
             public int getWorkerQueueSize() {
                 return NioXnioWorker.this.getWorkerQueueSize();
             }
+
+            public long getSuppressedWakeupCount() {
+                long count = 0L;
+                for (WorkerThread worker : NioXnioWorker.this.workerThreads) {
+                    count += worker.getSuppressedWakeupCount();
+                }
+                return count;
+            }
+
+            public long getSelectorRebuildCount() {
+                long count = 0L;
+                for (WorkerThread worker : NioXnioWorker.this.workerThreads) {
+                    count += worker.getSelectorRebuildCount();
+                }
+                return count;
+            }
+
+            public long getSlowHandlerCount() {
+                long count = 0L;
+                for (WorkerThread worker : NioXnioWorker.this.workerThreads) {
+                    count += worker.getSlowHandlerCount();
+                }
+                return count;
+            }
+        });
+        threadMBeanHandles = new Closeable[threadCount + acceptThreadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threadMBeanHandles[i] = registerThreadMBean(workerName, workerThreads[i]);
+        }
+        for (int i = 0; i < acceptThreadCount; i++) {
+            threadMBeanHandles[threadCount + i] = registerThreadMBean(workerName, acceptThreads[i]);
+        }
+    }
+
+    private static Closeable registerThreadMBean(final String workerName, final WorkerThread thread) {
+        return NioXnio.register(new XnioIoThreadMXBean() {
+            public String getProviderName() {
+                return "nio";
+            }
+
+            public String getWorkerName() {
+                return workerName;
+            }
+
+            public String getName() {
+                return thread.getName();
+            }
+
+            public long getSelectCount() {
+                return thread.getSelectCount();
+            }
+
+            public long getSelectTime() {
+                return thread.getSelectTime();
+            }
+
+            public long getHandlerTime() {
+                return thread.getHandlerTime();
+            }
+
+            public long getTaskTime() {
+                return thread.getTaskTime();
+            }
+
+            public long getTasksExecuted() {
+                return thread.getTasksExecuted();
+            }
+
+            public int getPendingDelayedTasks() {
+                return thread.getPendingDelayedTaskCount();
+            }
+
+            public int getRegisteredKeyCount() {
+                return thread.getRegisteredKeyCount();
+            }
+
+            public long getMaxHandlerTime() {
+                return thread.getMaxHandlerTime();
+            }
+
+            public int getConnectionCount() {
+                return thread.getConnectionCount();
+            }
+
+            public long getSlowHandlerCount() {
+                return thread.getSlowHandlerCount();
+            }
         });
     }
 
@@ -145,9 +283,26 @@ final class NioXnioWorker extends XnioWorker {
             openResourceUnconditionally();
             worker.start();
         }
+        for (WorkerThread worker : acceptThreads) {
+            openResourceUnconditionally();
+            worker.start();
+        }
+        if (workerThreads.length > 0) {
+            final WorkerThread first = workerThreads[0];
+            final long slowHandlerThreshold = first.getSlowHandlerThreshold();
+            if (slowHandlerThreshold > 0L) {
+                final Thread watchdog = new Thread(first.getThreadGroup(), new SlowHandlerWatchdog(workerThreads, slowHandlerThreshold), getName() + " watchdog");
+                watchdog.setDaemon(true);
+                watchdog.start();
+            }
+        }
     }
 
     protected WorkerThread chooseThread() {
+        return chooseThread(threadSelection);
+    }
+
+    WorkerThread chooseThread(final IoThreadSelection threadSelection) {
         final WorkerThread[] workerThreads = this.workerThreads;
         final int length = workerThreads.length;
         if (length == 0) {
@@ -156,6 +311,49 @@ final class NioXnioWorker extends XnioWorker {
         if (length == 1) {
             return workerThreads[0];
         }
+        switch (threadSelection) {
+            case ROUND_ROBIN: {
+                return workerThreads[(nextThreadUpdater.getAndIncrement(this) & Integer.MAX_VALUE) % length];
+            }
+            case LEAST_CONNECTIONS: {
+                // start from a random thread so that ties are spread out
+                final int start = IoUtils.getThreadLocalRandom().nextInt(length);
+                WorkerThread chosen = workerThreads[start];
+                int least = chosen.getConnectionCount();
+                for (int i = 1; i < length && least > 0; i ++) {
+                    final WorkerThread thread = workerThreads[(start + i) % length];
+                    final int count = thread.getConnectionCount();
+                    if (count < least) {
+                        chosen = thread;
+                        least = count;
+                    }
+                }
+                return chosen;
+            }
+            case LEAST_BUSY: {
+                final long now = System.nanoTime();
+                final int start = IoUtils.getThreadLocalRandom().nextInt(length);
+                WorkerThread chosen = workerThreads[start];
+                long least = chosen.getRecentBusyTime(now);
+                for (int i = 1; i < length && least > 0L; i ++) {
+                    final WorkerThread thread = workerThreads[(start + i) % length];
+                    final long busy = thread.getRecentBusyTime(now);
+                    if (busy < least) {
+                        chosen = thread;
+                        least = busy;
+                    }
+                }
+                return chosen;
+            }
+            case CALLER_AFFINITY: {
+                final WorkerThread current = WorkerThread.getCurrent();
+                // accept threads belong to the worker too, but must not own connections
+                if (current != null && current.getWorker() == this && current.getNumber() < length && workerThreads[current.getNumber()] == current) {
+                    return current;
+                }
+                break;
+            }
+        }
         final Random random = IoUtils.getThreadLocalRandom();
         return workerThreads[random.nextInt(length)];
     }
@@ -168,30 +366,70 @@ final class NioXnioWorker extends XnioWorker {
         return workerThreads;
     }
 
+    NioResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Get the dedicated accept threads.
+     *
+     * @return the accept threads, or an empty array if connections are accepted by the I/O threads
+     */
+    WorkerThread[] getAcceptThreads() {
+        return acceptThreads;
+    }
+
     protected AcceptingChannel<StreamConnection> createTcpConnectionServer(final InetSocketAddress bindAddress, final ChannelListener<? super AcceptingChannel<StreamConnection>> acceptListener, final OptionMap optionMap) throws IOException {
         checkShutdown();
         boolean ok = false;
         final ServerSocketChannel channel = ServerSocketChannel.open();
-        try {
-            if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
-            channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, true));
-            channel.configureBlocking(false);
-            if (optionMap.contains(Options.BACKLOG)) {
-                channel.socket().bind(bindAddress, optionMap.get(Options.BACKLOG, 128));
+        final ServerSocketChannel[] channels;
+        final int listenerCount = acceptThreads.length > 0 ? acceptThreads.length : workerThreads.length;
+        if (optionMap.get(Options.REUSE_PORT, false) && listenerCount > 1) {
+            if (NioSocketOptions.SO_REUSEPORT != null && channel.supportedOptions().contains(NioSocketOptions.SO_REUSEPORT)) {
+                channels = new ServerSocketChannel[listenerCount];
             } else {
-                channel.socket().bind(bindAddress);
+                log.debugf("SO_REUSEPORT is not supported; %s will use a single listening socket", bindAddress);
+                channels = new ServerSocketChannel[1];
+            }
+        } else {
+            channels = new ServerSocketChannel[1];
+        }
+        channels[0] = channel;
+        try {
+            bindServerChannel(channel, bindAddress, optionMap, channels.length > 1);
+            // the first bind has chosen the port, in case an ephemeral port was requested
+            final SocketAddress boundAddress = channel.socket().getLocalSocketAddress();
+            for (int i = 1; i < channels.length; i ++) {
+                channels[i] = ServerSocketChannel.open();
+                bindServerChannel(channels[i], boundAddress, optionMap, true);
             }
-            final NioTcpServer server = new NioTcpServer(this, channel, optionMap);
+            final NioTcpServer server = new NioTcpServer(this, channels, optionMap);
             server.setAcceptListener(acceptListener);
             ok = true;
             return server;
         } finally {
             if (! ok) {
-                IoUtils.safeClose(channel);
+                for (ServerSocketChannel serverChannel : channels) {
+                    IoUtils.safeClose(serverChannel);
+                }
             }
         }
     }
 
+    private static void bindServerChannel(final ServerSocketChannel channel, final SocketAddress bindAddress, final OptionMap optionMap, final boolean reusePort) throws IOException {
+        if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
+        channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, true));
+        if (reusePort) channel.setOption(NioSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+        NioSocketOptions.apply(channel, optionMap, Options.TCP_FASTOPEN, Options.TCP_DEFER_ACCEPT);
+        channel.configureBlocking(false);
+        if (optionMap.contains(Options.BACKLOG)) {
+            channel.socket().bind(bindAddress, optionMap.get(Options.BACKLOG, 128));
+        } else {
+            channel.socket().bind(bindAddress);
+        }
+    }
+
 
     /** {@inheritDoc} */
     public MulticastMessageChannel createUdpServer(final InetSocketAddress bindAddress, final ChannelListener<? super MulticastMessageChannel> bindListener, final OptionMap optionMap) throws IOException {
@@ -275,6 +513,9 @@ final class NioXnioWorker extends XnioWorker {
             for (WorkerThread worker : workerThreads) {
                 worker.shutdown();
             }
+            for (WorkerThread worker : acceptThreads) {
+                worker.shutdown();
+            }
             shutDownTaskPool();
             return;
         }
@@ -346,6 +587,9 @@ final class NioXnioWorker extends XnioWorker {
 
     protected void taskPoolTerminated() {
         safeClose(mbeanHandle);
+        for (Closeable handle : threadMBeanHandles) {
+            safeClose(handle);
+        }
         closeResource();
     }
 
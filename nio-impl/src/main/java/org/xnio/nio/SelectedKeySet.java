@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.xnio.nio.Log.selectorLog;
+
+/**
+ * An array-backed replacement for the selected-key set of a JDK selector.  The selector adds ready keys by
+ * appending to the array, and the owning I/O thread walks the array by index, so no hashing, copying or locking
+ * happens per select.  Membership is never tested, so if a key becomes ready again while the thread is still
+ * walking the set (because a handler performed a nested select), it may be visited a second time; handlers must
+ * tolerate such spurious readiness anyway.
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    private SelectionKey[] keys = new SelectionKey[256];
+    private int size;
+
+    private SelectedKeySet() {
+    }
+
+    /**
+     * Replace the selected-key set of the given selector with a new array-backed set, if the selector implementation
+     * allows it.
+     *
+     * @param selector the selector
+     * @return the installed set, or {@code null} if it could not be installed
+     */
+    static SelectedKeySet install(final Selector selector) {
+        final SelectedKeySet keySet = new SelectedKeySet();
+        final Throwable problem = AccessController.doPrivileged(new PrivilegedAction<Throwable>() {
+            public Throwable run() {
+                try {
+                    final Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, null);
+                    if (! selectorImplClass.isInstance(selector)) {
+                        return new ClassCastException(selector.getClass().getName());
+                    }
+                    final Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+                    final Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+                    selectedKeysField.setAccessible(true);
+                    publicSelectedKeysField.setAccessible(true);
+                    selectedKeysField.set(selector, keySet);
+                    publicSelectedKeysField.set(selector, keySet);
+                    return null;
+                } catch (Throwable t) {
+                    return t;
+                }
+            }
+        });
+        if (problem != null) {
+            selectorLog.debugf("Cannot replace the selected key set of %s (%s); selected keys will be copied", selector, problem);
+            return null;
+        }
+        return keySet;
+    }
+
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        SelectionKey[] keys = this.keys;
+        final int size = this.size;
+        if (size == keys.length) {
+            this.keys = keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size] = key;
+        this.size = size + 1;
+        return true;
+    }
+
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    public boolean remove(final Object o) {
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the key at the given position.
+     *
+     * @param index the index, which must be less than {@link #size()}
+     * @return the key
+     */
+    SelectionKey get(final int index) {
+        return keys[index];
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            public SelectionKey next() {
+                if (idx >= size) {
+                    throw new NoSuchElementException();
+                }
+                return keys[idx ++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.locks.LockSupport;
+
+import org.xnio.ChannelListeners;
+
+import static java.lang.System.nanoTime;
+import static org.xnio.nio.Log.log;
+
+/**
+ * A task which periodically looks at the handler each I/O thread of a worker is running, and reports any handler
+ * which has been running for longer than the slow handler threshold, together with the stack of its thread.  Each
+ * invocation is reported at most once.  The watchdog exits once all of the I/O threads have exited.
+ */
+final class SlowHandlerWatchdog implements Runnable {
+
+    private final WorkerThread[] threads;
+    private final long thresholdNanos;
+    private final long[] reported;
+
+    SlowHandlerWatchdog(final WorkerThread[] threads, final long thresholdNanos) {
+        this.threads = threads;
+        this.thresholdNanos = thresholdNanos;
+        reported = new long[threads.length];
+    }
+
+    public void run() {
+        // a handler is reported at most a quarter of the threshold late
+        final long interval = Math.max(thresholdNanos >> 2, 1000000L);
+        boolean alive = true;
+        while (alive) {
+            LockSupport.parkNanos(this, interval);
+            alive = false;
+            for (int i = 0; i < threads.length; i ++) {
+                final WorkerThread thread = threads[i];
+                alive |= thread.isAlive();
+                final long since = thread.getRunningSince();
+                if (since == 0L || since == reported[i] || nanoTime() - since < thresholdNanos) {
+                    continue;
+                }
+                final Object handler = thread.getRunningHandler();
+                final StackTraceElement[] stack = thread.getStackTrace();
+                if (thread.getRunningSince() != since) {
+                    // finished (or replaced) in the meantime, so the handler and stack may not match
+                    continue;
+                }
+                reported[i] = since;
+                thread.slowHandlerDetected();
+                final Throwable trace = new Throwable("Stack of I/O thread \"" + thread.getName() + "\"");
+                trace.setStackTrace(stack);
+                log.slowHandler(trace, describe(handler, stack), thread.getName(), (nanoTime() - since) / 1000000L);
+            }
+        }
+    }
+
+    /**
+     * Get the name of the class responsible for a handler invocation.  If a channel listener is running, that is the
+     * innermost listener on the stack; otherwise it is the task or the handle attached to the selection key.
+     */
+    static String describe(final Object handler, final StackTraceElement[] stack) {
+        final String listenersClassName = ChannelListeners.class.getName();
+        for (int i = 1; i < stack.length; i ++) {
+            final StackTraceElement element = stack[i];
+            if (element.getClassName().equals(listenersClassName) && element.getMethodName().equals("invokeChannelListener")) {
+                return stack[i - 1].getClassName();
+            }
+        }
+        final Object target = handler instanceof SelectionKey ? ((SelectionKey) handler).attachment() : handler;
+        return target == null ? String.valueOf(handler) : target.getClass().getName();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free, unbounded, multiple-producer single-consumer task queue.  Any thread may {@link #offer(Runnable)} a
+ * task, but only the owning I/O thread may {@link #poll()} or test for {@link #isEmpty() emptiness}.
+ * <p>
+ * Producers claim a position by atomically swapping the tail node and then link the previous tail to the new node.
+ * Between those two steps the new task is not yet visible to {@link #poll()}, though {@link #isEmpty()} already
+ * reports it.  The link is published with a volatile store so that it is ordered before any volatile read the
+ * producer makes after {@code offer} returns; the I/O thread relies on this when a producer skips waking the
+ * selector because a wakeup is already pending.
+ */
+final class TaskQueue {
+
+    private volatile Node tail;
+    private Node head;
+
+    private static final AtomicReferenceFieldUpdater<TaskQueue, Node> tailUpdater = AtomicReferenceFieldUpdater.newUpdater(TaskQueue.class, Node.class, "tail");
+
+    TaskQueue() {
+        final Node stub = new Node(null);
+        head = stub;
+        tail = stub;
+    }
+
+    /**
+     * Add a task to the queue.  May be called from any thread.
+     *
+     * @param task the task to add
+     */
+    void offer(final Runnable task) {
+        final Node node = new Node(task);
+        final Node prev = tailUpdater.getAndSet(this, node);
+        // volatile store: must not be reordered with the caller's subsequent read of the wakeup flag
+        prev.next = node;
+    }
+
+    /**
+     * Remove the next task from the queue.  Must only be called from the consuming thread.
+     *
+     * @return the next task, or {@code null} if no task is (yet) visible
+     */
+    Runnable poll() {
+        final Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        final Runnable task = next.task;
+        // the consumed node becomes the new stub
+        next.task = null;
+        head = next;
+        return task;
+    }
+
+    /**
+     * Determine whether the queue is empty.  Must only be called from the consuming thread.  A task whose producer
+     * has claimed a position but not yet linked it is considered to be present.
+     *
+     * @return {@code true} if there are no tasks in the queue
+     */
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    static final class Node {
+        volatile Node next;
+        Runnable task;
+
+        Node(final Runnable task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.xnio.XnioExecutor;
+
+/**
+ * A hierarchical timing wheel for the delayed tasks of a single I/O thread.  Scheduling and cancelling a task are
+ * constant-time operations; the price is that tasks run on a tick boundary, so a task may run up to one tick later
+ * than requested (but never earlier).
+ * <p>
+ * The wheel has {@link #LEVELS} levels of {@link #WHEEL_SIZE} buckets each.  Level {@code n} holds tasks which are
+ * due between {@code 64^n} and {@code 64^(n+1)} ticks from now; whenever the lower level wraps around, the next
+ * bucket of the level above is cascaded down.  All of the wheel's state is confined to the owning thread; tasks
+ * scheduled from other threads are handed over through the thread's work queue, and tasks cancelled from other
+ * threads are simply marked and discarded when their bucket is next visited.
+ */
+final class TimingWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 6;
+    private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1L;
+
+    private final WorkerThread thread;
+    private final long tickNanos;
+    private final Timeout[] buckets = new Timeout[LEVELS * WHEEL_SIZE];
+    /**
+     * One bit for each non-empty bucket of the lowest level.
+     */
+    private long occupied;
+    /**
+     * The number of tasks in the wheel, including cancelled tasks which have not been unlinked yet.
+     */
+    private int count;
+    /**
+     * All ticks before this one have been processed.
+     */
+    private long currentTick;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> timeoutStateUpdater = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    TimingWheel(final WorkerThread thread, final long tickNanos, final long now) {
+        this.thread = thread;
+        this.tickNanos = tickNanos;
+        currentTick = now / tickNanos;
+    }
+
+    /**
+     * Schedule a task.  May be called from any thread.
+     *
+     * @param command the task to run
+     * @param deadline the time (relative to the thread's time base) at or after which the task may run
+     * @return the cancellation key
+     */
+    XnioExecutor.Key schedule(final Runnable command, final long deadline) {
+        final Timeout timeout = new Timeout(command, (deadline + tickNanos - 1L) / tickNanos);
+        if (Thread.currentThread() == thread) {
+            insert(timeout);
+        } else {
+            thread.execute(new Runnable() {
+                public void run() {
+                    if (timeout.state == Timeout.WAITING) {
+                        insert(timeout);
+                    }
+                }
+            });
+        }
+        return timeout;
+    }
+
+    /**
+     * Process all ticks up to the given time, moving the commands of expired tasks to the given queue.  Must only be
+     * called from the owning thread.
+     *
+     * @param now the current time (relative to the thread's time base)
+     * @param queue the queue to receive expired commands
+     */
+    void advance(final long now, final TaskQueue queue) {
+        final long nowTick = now / tickNanos;
+        long tick = currentTick;
+        while (tick <= nowTick) {
+            if (count == 0) {
+                // nothing to do; catch up immediately
+                tick = nowTick + 1L;
+                break;
+            }
+            final int idx = (int) (tick & WHEEL_MASK);
+            if (idx == 0) {
+                currentTick = tick;
+                cascade(1, tick);
+            }
+            if ((occupied & (1L << idx)) != 0L) {
+                Timeout timeout = detach(idx);
+                while (timeout != null) {
+                    final Timeout next = timeout.next;
+                    timeout.next = timeout.prev = null;
+                    if (timeoutStateUpdater.compareAndSet(timeout, Timeout.WAITING, Timeout.EXPIRED)) {
+                        queue.offer(timeout.command);
+                    }
+                    timeout = next;
+                }
+            }
+            tick ++;
+            if (occupied == 0L && (tick & WHEEL_MASK) != 0L) {
+                // skip ahead to the next cascade point
+                tick = Math.min(nowTick + 1L, (tick | WHEEL_MASK) + 1L);
+            }
+        }
+        currentTick = tick;
+    }
+
+    /**
+     * Get the number of tasks in the wheel, including cancelled tasks which have not been unlinked yet.  Must only be
+     * called from the owning thread.
+     *
+     * @return the number of tasks
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Get the amount of time until the wheel next needs to be advanced.  Must only be called from the owning thread.
+     *
+     * @param now the current time (relative to the thread's time base)
+     * @return the delay in nanoseconds, or {@link Long#MAX_VALUE} if the wheel is empty
+     */
+    long getDelay(final long now) {
+        if (count == 0) {
+            return Long.MAX_VALUE;
+        }
+        final long tick = currentTick;
+        final long nextTick;
+        if (occupied != 0L) {
+            nextTick = tick + Long.numberOfTrailingZeros(Long.rotateRight(occupied, (int) (tick & WHEEL_MASK)));
+        } else {
+            nextTick = (tick | WHEEL_MASK) + 1L;
+        }
+        return Math.max(0L, nextTick * tickNanos - now);
+    }
+
+    private void cascade(final int level, final long tick) {
+        if (level == LEVELS) {
+            return;
+        }
+        final int idx = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Timeout timeout = detach(level * WHEEL_SIZE + idx);
+        if (idx == 0) {
+            cascade(level + 1, tick);
+        }
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            timeout.next = timeout.prev = null;
+            if (timeout.state == Timeout.WAITING) {
+                insert(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    private void insert(final Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        long tick = timeout.deadlineTick;
+        if (delta < 0L) {
+            delta = 0L;
+            tick = currentTick;
+        } else if (delta > MAX_TICKS) {
+            // too far out; park it at the far end, it will be re-inserted when it cascades
+            delta = MAX_TICKS;
+            tick = currentTick + MAX_TICKS;
+        }
+        int level = 0;
+        while (delta >= WHEEL_SIZE) {
+            delta >>>= WHEEL_BITS;
+            level ++;
+        }
+        final int idx = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        final int bucket = level * WHEEL_SIZE + idx;
+        final Timeout head = buckets[bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        timeout.bucket = bucket;
+        buckets[bucket] = timeout;
+        if (level == 0) {
+            occupied |= 1L << idx;
+        }
+        count ++;
+    }
+
+    private Timeout detach(final int bucket) {
+        final Timeout head = buckets[bucket];
+        if (head != null) {
+            buckets[bucket] = null;
+            if (bucket < WHEEL_SIZE) {
+                occupied &= ~(1L << bucket);
+            }
+            int n = 0;
+            for (Timeout t = head; t != null; t = t.next) {
+                t.bucket = -1;
+                n ++;
+            }
+            count -= n;
+        }
+        return head;
+    }
+
+    private void unlink(final Timeout timeout) {
+        final int bucket = timeout.bucket;
+        if (bucket == -1) {
+            // not in the wheel (yet or anymore)
+            return;
+        }
+        final Timeout prev = timeout.prev;
+        final Timeout next = timeout.next;
+        if (prev == null) {
+            buckets[bucket] = next;
+            if (next == null && bucket < WHEEL_SIZE) {
+                occupied &= ~(1L << bucket);
+            }
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        timeout.next = timeout.prev = null;
+        timeout.bucket = -1;
+        count --;
+    }
+
+    final class Timeout implements XnioExecutor.Key {
+        static final int WAITING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        private final Runnable command;
+        private final long deadlineTick;
+        volatile int state;
+        // owning thread only
+        private Timeout prev;
+        private Timeout next;
+        private int bucket = -1;
+
+        Timeout(final Runnable command, final long deadlineTick) {
+            this.command = command;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public boolean remove() {
+            if (! timeoutStateUpdater.compareAndSet(this, WAITING, CANCELLED)) {
+                return false;
+            }
+            if (Thread.currentThread() == thread) {
+                unlink(this);
+            }
+            return true;
+        }
+
+        public String toString() {
+            return String.format("Timing wheel key for %s", command);
+        }
+    }
+}
@@ -19,10 +19,13 @@
 package org.xnio.nio;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.Pipe;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -31,15 +34,18 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.security.AccessController;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Queue;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.jboss.logging.Logger;
@@ -52,6 +58,7 @@ import org.xnio.FailedIoFuture;
 import org.xnio.FinishedIoFuture;
 import org.xnio.FutureResult;
 import org.xnio.IoFuture;
+import org.xnio.IoThreadStatistics;
 import org.xnio.Option;
 import org.xnio.OptionMap;
 import org.xnio.Options;
@@ -81,13 +88,41 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
     private static final String FQCN = WorkerThread.class.getName();
     private static final boolean OLD_LOCKING;
     private static final boolean THREAD_SAFE_SELECTION_KEYS;
+    private static final boolean ARRAY_SELECTED_KEYS;
+    private static final int SELECTOR_REBUILD_THRESHOLD;
     private static final long START_TIME = System.nanoTime();
-
-    private final Selector selector;
+    /**
+     * The maximum number of tasks taken from sibling threads before this thread looks at its own channels again.
+     */
+    private static final int STEAL_BATCH = 16;
+    /**
+     * The half-life of the recent busy time used for least-busy thread selection, as a power of two in nanoseconds
+     * (about 134ms).
+     */
+    private static final int BUSY_HALF_LIFE_SHIFT = 27;
+
+    /**
+     * The current selector; only replaced by this thread, when the selector is rebuilt.
+     */
+    private volatile Selector selector;
+    /**
+     * The array-backed selected key set installed into {@link #selector}, or {@code null} if the JDK's set is in use.
+     */
+    private SelectedKeySet selectedKeySet;
     private final Object workLock = new Object();
 
-    private final Queue<Runnable> selectorWorkQueue = new ArrayDeque<Runnable>();
+    private final TaskQueue selectorWorkQueue = new TaskQueue();
     private final TreeSet<TimeKey> delayWorkQueue = new TreeSet<TimeKey>();
+    private final TimingWheel timingWheel;
+    /**
+     * Tasks which may be run by any thread of the worker, or {@code null} if work stealing is disabled.
+     */
+    private final ConcurrentLinkedQueue<Runnable> stealableQueue;
+    private final long spinNanos;
+    /**
+     * The slow handler threshold, or {@code 0} if handlers are not watched.
+     */
+    private final long slowHandlerNanos;
 
     private volatile int state;
 
@@ -95,14 +130,104 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
 
     private static final AtomicIntegerFieldUpdater<WorkerThread> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "state");
 
+    /**
+     * Non-zero if a selector wakeup has been issued since this thread last selected.
+     */
+    private volatile int wakeupPending;
+    /**
+     * Non-zero while this thread is (about to be) waiting in select; only maintained if work stealing is enabled.
+     */
+    private volatile int idle;
+    private volatile long suppressedWakeups;
+    /**
+     * The number of times the selector has been rebuilt; only written by this thread.
+     */
+    private volatile long selectorRebuilds;
+    /**
+     * Set to have this thread rebuild its selector before it next selects, regardless of whether it is spinning.
+     */
+    private volatile boolean rebuildRequested;
+    /**
+     * The number of open connections and channels owned by this thread.
+     */
+    private volatile int connectionCount;
+
+    // Activity counters; each is only written by this thread, once per loop iteration
+    private volatile long selectCount;
+    private volatile long selectTime;
+    private volatile long handlerTime;
+    private volatile long maxHandlerTime;
+    private volatile long taskTime;
+    private volatile long tasksExecuted;
+    private volatile int timingWheelSize;
+    /**
+     * The time spent running tasks and handlers, halved for every {@link #BUSY_HALF_LIFE_SHIFT half-life} since
+     * {@link #recentBusySince}; only written by this thread.
+     */
+    private volatile long recentBusyTime;
+    private volatile long recentBusySince;
+
+    // The handler (a task or a selection key) currently being run, for the slow handler watchdog
+    private volatile Object runningHandler;
+    /**
+     * The time at which {@link #runningHandler} was started, or {@code 0} if no handler is running.
+     */
+    private volatile long runningSince;
+    /**
+     * The number of slow handler invocations; only written by the watchdog thread.
+     */
+    private volatile long slowHandlers;
+
+    /**
+     * The size of the smallest read-ahead buffer.
+     */
+    static final int MIN_READ_AHEAD = 512;
+    /**
+     * The number of read-ahead buffer sizes; each is twice the size of the one before.
+     */
+    static final int READ_AHEAD_CLASSES = 8;
+    /**
+     * The number of free read-ahead buffers kept for each size.
+     */
+    private static final int READ_AHEAD_CACHED = 2;
+
+    // Free read-ahead buffers by size class; only used by this thread
+    private final ByteBuffer[][] readAheadBuffers = new ByteBuffer[READ_AHEAD_CLASSES][READ_AHEAD_CACHED];
+    private final int[] readAheadBufferCounts = new int[READ_AHEAD_CLASSES];
+
+    private static final AtomicIntegerFieldUpdater<WorkerThread> wakeupPendingUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "wakeupPending");
+    private static final AtomicIntegerFieldUpdater<WorkerThread> connectionCountUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "connectionCount");
+    private static final AtomicLongFieldUpdater<WorkerThread> suppressedWakeupsUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "suppressedWakeups");
+
     static {
         OLD_LOCKING = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.old-locking", "false")));
         THREAD_SAFE_SELECTION_KEYS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.xnio.thread-safe-selection-keys", "false")));
+        ARRAY_SELECTED_KEYS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.array-selected-keys", "false")));
+        // the number of consecutive premature selects after which the selector is replaced; 0 disables rebuilding
+        SELECTOR_REBUILD_THRESHOLD = Integer.parseInt(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.selector.rebuild-threshold", "512")));
     }
 
-    WorkerThread(final NioXnioWorker worker, final Selector selector, final String name, final ThreadGroup group, final long stackSize, final int number) {
+    WorkerThread(final NioXnioWorker worker, final Selector selector, final String name, final ThreadGroup group, final long stackSize, final int number, final OptionMap optionMap) {
         super(worker, number, group, name, stackSize);
         this.selector = selector;
+        selectedKeySet = ARRAY_SELECTED_KEYS ? SelectedKeySet.install(selector) : null;
+        final int timerTick = optionMap.get(Options.WORKER_TIMER_TICK, 0);
+        if (timerTick < 0) {
+            throw log.optionOutOfRange("WORKER_TIMER_TICK");
+        }
+        // a zero tick means precise timing using the sorted delay queue
+        timingWheel = timerTick == 0 ? null : new TimingWheel(this, timerTick * 1000000L, nanoTime() - START_TIME);
+        final int spinTime = optionMap.get(Options.WORKER_IO_SPIN_TIME, 0);
+        if (spinTime < 0) {
+            throw log.optionOutOfRange("WORKER_IO_SPIN_TIME");
+        }
+        spinNanos = spinTime * 1000L;
+        final int slowHandlerThreshold = optionMap.get(Options.WORKER_SLOW_HANDLER_THRESHOLD, 0);
+        if (slowHandlerThreshold < 0) {
+            throw log.optionOutOfRange("WORKER_SLOW_HANDLER_THRESHOLD");
+        }
+        slowHandlerNanos = slowHandlerThreshold * 1000000L;
+        stealableQueue = optionMap.get(Options.WORKER_IO_WORK_STEALING, false) ? new ConcurrentLinkedQueue<Runnable>() : null;
     }
 
     static WorkerThread getCurrent() {
@@ -193,11 +318,18 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                                 if (optionMap.contains(Options.CLOSE_ABORT)) channel.socket().setSoLinger(optionMap.get(Options.CLOSE_ABORT, false), 0);
                                 if (optionMap.contains(Options.KEEP_ALIVE)) channel.socket().setKeepAlive(optionMap.get(Options.KEEP_ALIVE, false));
                                 if (optionMap.contains(Options.SEND_BUFFER)) channel.socket().setSendBufferSize(optionMap.get(Options.SEND_BUFFER, -1));
+                                NioSocketOptions.apply(channel, optionMap, Options.TCP_QUICKACK);
                                 final SelectionKey selectionKey = WorkerThread.this.registerChannel(channel);
                                 final NioSocketStreamConnection connection = new NioSocketStreamConnection(WorkerThread.this, selectionKey, null);
-                                if (futureResult.setResult(connection)) {
-                                    ok = true;
-                                    ChannelListeners.invokeChannelListener(connection, openListener);
+                                try {
+                                    applyConduitOptions(connection, optionMap);
+                                    if (futureResult.setResult(connection)) {
+                                        ok = true;
+                                        ChannelListeners.invokeChannelListener(connection, openListener);
+                                    }
+                                } finally {
+                                    // closing the connection rather than just its channel also drops it from the count
+                                    if (! ok) safeClose(connection);
                                 }
                             } finally {
                                 if (! ok) safeClose(channel);
@@ -218,7 +350,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                         futureResult.setCancelled();
                     }
                 };
-                key.attach(handle);
+                handle.attach();
                 handle.resume(SelectionKey.OP_ACCEPT);
                 ok = true;
                 futureResult.addCancelHandler(new Cancellable() {
@@ -244,6 +376,10 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         } catch (ClosedWorkerException e) {
             return new FailedIoFuture<StreamConnection>(e);
         }
+        final NioResolver resolver = getWorker().getResolver();
+        if (resolver != null && destinationAddress.isUnresolved()) {
+            return resolveTcpStreamConnection(resolver, bindAddress, destinationAddress, openListener, bindListener, optionMap);
+        }
         try {
             final SocketChannel channel = SocketChannel.open();
             boolean ok = false;
@@ -257,30 +393,38 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                 if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
                 if (optionMap.contains(Options.REUSE_ADDRESSES)) channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, false));
                 if (optionMap.contains(Options.SEND_BUFFER)) channel.socket().setSendBufferSize(optionMap.get(Options.SEND_BUFFER, -1));
+                NioSocketOptions.apply(channel, optionMap, Options.TCP_QUICKACK);
                 final SelectionKey key = registerChannel(channel);
                 final NioSocketStreamConnection connection = new NioSocketStreamConnection(this, key, null);
-                channel.socket().bind(bindAddress);
-                ChannelListeners.invokeChannelListener(connection, bindListener);
-                if (channel.connect(destinationAddress)) {
-                    execute(ChannelListeners.getChannelListenerTask(connection, openListener));
-                    final FinishedIoFuture<StreamConnection> finishedIoFuture = new FinishedIoFuture<StreamConnection>(connection);
+                try {
+                    applyConduitOptions(connection, optionMap);
+                    channel.socket().bind(bindAddress);
+                    ChannelListeners.invokeChannelListener(connection, bindListener);
+                    if (channel.connect(destinationAddress)) {
+                        execute(ChannelListeners.getChannelListenerTask(connection, openListener));
+                        final FinishedIoFuture<StreamConnection> finishedIoFuture = new FinishedIoFuture<StreamConnection>(connection);
+                        ok = true;
+                        return finishedIoFuture;
+                    }
+                    final FutureResult<StreamConnection> futureResult = new FutureResult<StreamConnection>(this);
+                    // the key may have moved to a new selector since it was registered
+                    final ConnectHandle connectHandle = new ConnectHandle(this, connection.getConduit().getSelectionKey(), futureResult, connection, openListener);
+                    connectHandle.attach();
+                    futureResult.addCancelHandler(new Cancellable() {
+                        public Cancellable cancel() {
+                            if (futureResult.setCancelled()) {
+                                safeClose(connection);
+                            }
+                            return this;
+                        }
+                    });
+                    connectHandle.resume(SelectionKey.OP_CONNECT);
                     ok = true;
-                    return finishedIoFuture;
+                    return futureResult.getIoFuture();
+                } finally {
+                    // closing the connection rather than just its channel also drops it from the count
+                    if (! ok) safeClose(connection);
                 }
-                final FutureResult<StreamConnection> futureResult = new FutureResult<StreamConnection>(this);
-                final ConnectHandle connectHandle = new ConnectHandle(this, key, futureResult, connection, openListener);
-                key.attach(connectHandle);
-                futureResult.addCancelHandler(new Cancellable() {
-                    public Cancellable cancel() {
-                        if (futureResult.setCancelled()) {
-                            safeClose(connection);
-                        }
-                        return this;
-                    }
-                });
-                connectHandle.resume(SelectionKey.OP_CONNECT);
-                ok = true;
-                return futureResult.getIoFuture();
             } finally {
                 if (! ok) safeClose(channel);
             }
@@ -289,6 +433,130 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         }
     }
 
+    protected IoFuture<StreamConnection> openTcpStreamConnection(final InetSocketAddress bindAddress, final List<? extends InetSocketAddress> destinationAddresses, final ChannelListener<? super StreamConnection> openListener, final ChannelListener<? super BoundChannel> bindListener, final OptionMap optionMap) {
+        try {
+            getWorker().checkShutdown();
+        } catch (ClosedWorkerException e) {
+            return new FailedIoFuture<StreamConnection>(e);
+        }
+        final int delay = optionMap.get(Options.CONNECT_ATTEMPT_DELAY, 250);
+        if (delay < 0) {
+            throw log.optionOutOfRange("CONNECT_ATTEMPT_DELAY");
+        }
+        return new ConnectRace(this, bindAddress, new ArrayList<InetSocketAddress>(destinationAddresses), openListener, bindListener, optionMap, delay).start();
+    }
+
+    /**
+     * Resolve the destination address of a connection away from this thread, and then open the connection on this
+     * thread.
+     */
+    private IoFuture<StreamConnection> resolveTcpStreamConnection(final NioResolver resolver, final InetSocketAddress bindAddress, final InetSocketAddress destinationAddress, final ChannelListener<? super StreamConnection> openListener, final ChannelListener<? super BoundChannel> bindListener, final OptionMap optionMap) {
+        final FutureResult<StreamConnection> futureResult = new FutureResult<StreamConnection>(this);
+        futureResult.addCancelHandler(new Cancellable() {
+            public Cancellable cancel() {
+                futureResult.setCancelled();
+                return this;
+            }
+        });
+        resolver.resolve(destinationAddress.getHostString()).addNotifier(new IoFuture.HandlingNotifier<InetAddress[], FutureResult<StreamConnection>>() {
+            public void handleDone(final InetAddress[] addresses, final FutureResult<StreamConnection> result) {
+                final Runnable task = new Runnable() {
+                    public void run() {
+                        if (result.getIoFuture().getStatus() != IoFuture.Status.WAITING) {
+                            return;
+                        }
+                        final IoFuture<StreamConnection> connectFuture;
+                        if (addresses.length == 1) {
+                            connectFuture = openTcpStreamConnection(bindAddress, new InetSocketAddress(addresses[0], destinationAddress.getPort()), openListener, bindListener, optionMap);
+                        } else {
+                            connectFuture = openTcpStreamConnection(bindAddress, ConnectRace.interleave(addresses, destinationAddress.getPort()), openListener, bindListener, optionMap);
+                        }
+                        connectFuture.addNotifier(new IoFuture.HandlingNotifier<StreamConnection, FutureResult<StreamConnection>>() {
+                            public void handleDone(final StreamConnection connection, final FutureResult<StreamConnection> result) {
+                                if (! result.setResult(connection)) {
+                                    // cancelled while connecting
+                                    safeClose(connection);
+                                }
+                            }
+
+                            public void handleFailed(final IOException exception, final FutureResult<StreamConnection> result) {
+                                result.setException(exception);
+                            }
+
+                            public void handleCancelled(final FutureResult<StreamConnection> result) {
+                                result.setCancelled();
+                            }
+                        }, result);
+                        result.addCancelHandler(connectFuture);
+                    }
+                };
+                if (currentThread() == WorkerThread.this) {
+                    task.run();
+                } else {
+                    try {
+                        execute(task);
+                    } catch (RejectedExecutionException e) {
+                        result.setException(new ClosedWorkerException());
+                    }
+                }
+            }
+
+            public void handleFailed(final IOException exception, final FutureResult<StreamConnection> result) {
+                result.setException(exception);
+            }
+        }, futureResult);
+        return futureResult.getIoFuture();
+    }
+
+    private static void applyConduitOptions(final NioSocketStreamConnection connection, final OptionMap optionMap) {
+        final NioSocketConduit conduit = connection.getConduit();
+        conduit.getAndSetCork(optionMap.get(Options.CORK, false));
+        conduit.getAndSetWriteCoalescing(optionMap.get(Options.WRITE_COALESCING, false));
+        conduit.getAndSetReadAhead(optionMap.get(Options.READ_AHEAD, false));
+        if (optionMap.contains(Options.READ_AHEAD_BUDGET)) {
+            conduit.getAndSetReadAheadBudget(optionMap.get(Options.READ_AHEAD_BUDGET, 0));
+        }
+        conduit.getAndSetIoEventBudget(optionMap.get(Options.IO_EVENT_BUDGET, 0));
+    }
+
+    /**
+     * Get a read-ahead or write coalescing buffer, reusing one freed by a connection of this thread if possible.
+     *
+     * @param sizeClass the size class of the buffer, which holds {@code MIN_READ_AHEAD << sizeClass} bytes
+     * @return the cleared buffer
+     */
+    ByteBuffer allocateReadAheadBuffer(final int sizeClass) {
+        if (currentThread() == this) {
+            final int count = readAheadBufferCounts[sizeClass];
+            if (count > 0) {
+                final ByteBuffer[] buffers = readAheadBuffers[sizeClass];
+                final ByteBuffer buffer = buffers[count - 1];
+                buffers[count - 1] = null;
+                readAheadBufferCounts[sizeClass] = count - 1;
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(MIN_READ_AHEAD << sizeClass);
+    }
+
+    /**
+     * Keep a read-ahead or write coalescing buffer which is no longer in use for reuse.  Buffers freed from another
+     * thread, or beyond the number kept per size class, are left to the garbage collector.
+     *
+     * @param buffer the buffer
+     */
+    void freeReadAheadBuffer(final ByteBuffer buffer) {
+        if (currentThread() == this) {
+            final int sizeClass = Integer.numberOfTrailingZeros(buffer.capacity() / MIN_READ_AHEAD);
+            final int count = readAheadBufferCounts[sizeClass];
+            if (count < READ_AHEAD_CACHED) {
+                readAheadBuffers[sizeClass][count] = buffer;
+                readAheadBufferCounts[sizeClass] = count + 1;
+            }
+        }
+    }
+
     WorkerThread getNextThread() {
         final WorkerThread[] all = getWorker().getAll();
         final int number = getNumber();
@@ -318,7 +586,10 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             try {
                 if (channel.finishConnect()) {
                     suspend(SelectionKey.OP_CONNECT);
-                    getSelectionKey().attach(connection.getConduit());
+                    final NioSocketConduit conduit = connection.getConduit();
+                    // the selector may have been rebuilt since the conduit was created
+                    conduit.setSelectionKey(getSelectionKey());
+                    conduit.attach();
                     if (futureResult.setResult(connection)) {
                         ok = true;
                         ChannelListeners.invokeChannelListener(connection, openListener);
@@ -337,7 +608,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
 
         void forceTermination() {
             futureResult.setCancelled();
-            safeClose(getChannel());
+            safeClose(connection);
         }
 
         void terminated() {
@@ -420,12 +691,15 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
     }
 
     public void run() {
-        final Selector selector = this.selector;
+        Selector selector = this.selector;
         try {
             log.tracef("Starting worker thread %s", this);
             final Object lock = workLock;
-            final Queue<Runnable> workQueue = selectorWorkQueue;
+            final TaskQueue workQueue = selectorWorkQueue;
             final TreeSet<TimeKey> delayQueue = delayWorkQueue;
+            final TimingWheel timingWheel = this.timingWheel;
+            final ConcurrentLinkedQueue<Runnable> stealableQueue = this.stealableQueue;
+            SelectedKeySet selectedKeySet = this.selectedKeySet;
             log.debugf("Started channel thread '%s', selector %s", currentThread().getName(), selector);
             Runnable task;
             Iterator<TimeKey> iterator;
@@ -434,12 +708,27 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             SelectionKey[] keys = new SelectionKey[16];
             int oldState;
             int keyCount;
+            boolean premature;
+            int stolen = 0;
+            int prematureSelects = 0;
+            long selectCount = 0L, selectTime = 0L, handlerTime = 0L, maxHandlerTime = 0L, taskTime = 0L, tasksExecuted = 0L;
+            long mark = nanoTime(), time;
+            long busyTime, lastBusyTime = 0L;
+            recentBusySince = mark;
             for (;;) {
-                // Run all tasks
+                // Run all tasks; the lock is only needed to consult the delay queue once the work queue is drained
                 do {
-                    synchronized (lock) {
+                    task = workQueue.poll();
+                    if (task == null && stealableQueue != null) {
+                        task = stealableQueue.poll();
+                    }
+                    if (task == null && timingWheel != null) {
+                        final long now = nanoTime() - START_TIME;
+                        timingWheel.advance(now, workQueue);
+                        delayTime = timingWheel.getDelay(now);
                         task = workQueue.poll();
-                        if (task == null) {
+                    } else if (task == null) {
+                        synchronized (lock) {
                             iterator = delayQueue.iterator();
                             delayTime = Long.MAX_VALUE;
                             if (iterator.hasNext()) {
@@ -447,7 +736,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                                 do {
                                     final TimeKey key = iterator.next();
                                     if (key.deadline <= (now - START_TIME)) {
-                                        workQueue.add(key.command);
+                                        workQueue.offer(key.command);
                                         iterator.remove();
                                     } else {
                                         delayTime = key.deadline - (now - START_TIME);
@@ -456,23 +745,35 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                                     }
                                 } while (iterator.hasNext());
                             }
-                            task = workQueue.poll();
                         }
+                        task = workQueue.poll();
                     }
                     // clear interrupt status
                     Thread.interrupted();
-                    safeRun(task);
+                    if (task != null) {
+                        runTask(task);
+                        tasksExecuted ++;
+                    }
                 } while (task != null);
-                // all tasks have been run
+                // all tasks have been run; help out busy siblings before going idle
                 oldState = state;
+                if (stealableQueue != null && (oldState & SHUTDOWN) == 0) {
+                    stolen = steal();
+                    tasksExecuted += stolen;
+                }
+                time = nanoTime();
+                this.taskTime = taskTime += time - mark;
+                this.tasksExecuted = tasksExecuted;
+                if (timingWheel != null) {
+                    timingWheelSize = timingWheel.size();
+                }
+                mark = time;
                 if ((oldState & SHUTDOWN) != 0) {
-                    synchronized (lock) {
-                        keyCount = selector.keys().size();
-                        state = keyCount | SHUTDOWN;
-                        if (keyCount == 0 && workQueue.isEmpty()) {
-                            // no keys or tasks left, shut down (delay tasks are discarded)
-                            return;
-                        }
+                    keyCount = selector.keys().size();
+                    state = keyCount | SHUTDOWN;
+                    if (keyCount == 0 && workQueue.isEmpty() && (stealableQueue == null || stealableQueue.isEmpty())) {
+                        // no keys or tasks left, shut down (delay tasks are discarded)
+                        return;
                     }
                     synchronized (selector) {
                         final Set<SelectionKey> keySet = selector.keys();
@@ -494,20 +795,36 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                     }
                     Arrays.fill(keys, 0, keys.length, null);
                 }
+                if (rebuildRequested) {
+                    rebuildRequested = false;
+                    rebuildSelector();
+                    selector = this.selector;
+                    selectedKeySet = this.selectedKeySet;
+                }
                 // clear interrupt status
                 Thread.interrupted();
                 // perform select
+                premature = false;
                 try {
                     if ((oldState & SHUTDOWN) != 0) {
                         selectorLog.tracef("Beginning select on %s (shutdown in progress)", selector);
                         selector.selectNow();
+                    } else if (stealableQueue != null && (stolen > 0 || ! enterIdle())) {
+                        // there may be more tasks to run or steal, so only poll for readiness
+                        selector.selectNow();
+                    } else if (! workQueue.isEmpty()) {
+                        // a submission raced with draining the queue and may have found a wakeup still pending
+                        selector.selectNow();
+                    } else if (spinNanos > 0L && spin(selector, workQueue, Math.min(spinNanos, delayTime))) {
+                        selectorLog.tracef("Finished spinning on %s", selector);
                     } else if (delayTime == Long.MAX_VALUE) {
                         selectorLog.tracef("Beginning select on %s", selector);
-                        selector.select();
+                        premature = selector.select() == 0;
                     } else {
                         final long millis = 1L + delayTime / 1000000L;
                         selectorLog.tracef("Beginning select on %s (with timeout)", selector);
-                        selector.select(millis);
+                        final long start = nanoTime();
+                        premature = selector.select(millis) == 0 && nanoTime() - start < millis * 1000000L;
                     }
                 } catch (CancelledKeyException ignored) {
                     // Mac and other buggy implementations sometimes spits these out
@@ -516,50 +833,256 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                     selectorLog.selectionError(e);
                     // hopefully transient; should never happen
                 }
+                if (stealableQueue != null) {
+                    idle = 0;
+                }
+                time = nanoTime();
+                this.selectTime = selectTime += time - mark;
+                this.selectCount = ++ selectCount;
+                mark = time;
+                // a select which returns early with nothing to do, over and over, is the JDK epoll spin bug
+                if (premature && wakeupPending == 0 && workQueue.isEmpty() && ! isInterrupted() && (state & SHUTDOWN) == 0) {
+                    if (++prematureSelects == SELECTOR_REBUILD_THRESHOLD) {
+                        selectorLog.selectorSpinning(selector, prematureSelects);
+                        rebuildSelector();
+                        selector = this.selector;
+                        selectedKeySet = this.selectedKeySet;
+                        prematureSelects = 0;
+                    }
+                } else {
+                    prematureSelects = 0;
+                }
+                // any pending wakeup has been consumed; the next submission must wake us again
+                wakeupPending = 0;
                 selectorLog.tracef("Selected on %s", selector);
                 // iterate the ready key set
-                synchronized (selector) {
-                    selectedKeys = selector.selectedKeys();
-                    synchronized (selectedKeys) {
-                        // copy so that handlers can safely cancel keys
-                        keys = selectedKeys.toArray(keys);
-                        Arrays.fill(keys, selectedKeys.size(), keys.length, null);
-                        selectedKeys.clear();
+                if (selectedKeySet != null) {
+                    // handlers may select again, appending to the set, so re-read the size each time
+                    for (int i = 0; i < selectedKeySet.size(); i++) {
+                        final SelectionKey key = selectedKeySet.get(i);
+                        if (slowHandlerNanos == 0L) {
+                            handleReady(key);
+                        } else {
+                            handlerStarted(key, mark);
+                            handleReady(key);
+                            runningSince = 0L;
+                        }
+                        time = nanoTime();
+                        handlerTime += time - mark;
+                        if (time - mark > maxHandlerTime) maxHandlerTime = time - mark;
+                        mark = time;
                     }
-                }
-                for (int i = 0; i < keys.length; i++) {
-                    final SelectionKey key = keys[i];
-                    if (key == null) break; //end of list
-                    keys[i] = null;
-                    final int ops;
-                    try {
-                        ops = key.interestOps();
-                        if (ops != 0) {
-                            selectorLog.tracef("Selected key %s for %s", key, key.channel());
-                            final NioHandle handle = (NioHandle) key.attachment();
-                            if (handle == null) {
-                                cancelKey(key);
-                            } else {
-                                // clear interrupt status
-                                Thread.interrupted();
-                                handle.handleReady(key.readyOps());
-                            }
+                    selectedKeySet.clear();
+                } else {
+                    synchronized (selector) {
+                        selectedKeys = selector.selectedKeys();
+                        synchronized (selectedKeys) {
+                            // copy so that handlers can safely cancel keys
+                            keys = selectedKeys.toArray(keys);
+                            Arrays.fill(keys, selectedKeys.size(), keys.length, null);
+                            selectedKeys.clear();
                         }
-                    } catch (CancelledKeyException ignored) {
-                        selectorLog.tracef("Skipping selection of cancelled key %s", key);
-                    } catch (Throwable t) {
-                        selectorLog.tracef(t, "Unexpected failure of selection of key %s", key);
+                    }
+                    for (int i = 0; i < keys.length; i++) {
+                        final SelectionKey key = keys[i];
+                        if (key == null) break; //end of list
+                        keys[i] = null;
+                        if (slowHandlerNanos == 0L) {
+                            handleReady(key);
+                        } else {
+                            handlerStarted(key, mark);
+                            handleReady(key);
+                            runningSince = 0L;
+                        }
+                        time = nanoTime();
+                        handlerTime += time - mark;
+                        if (time - mark > maxHandlerTime) maxHandlerTime = time - mark;
+                        mark = time;
                     }
                 }
+                this.handlerTime = handlerTime;
+                this.maxHandlerTime = maxHandlerTime;
+                busyTime = taskTime + handlerTime;
+                updateRecentBusyTime(mark, busyTime - lastBusyTime);
+                lastBusyTime = busyTime;
                 // all selected keys invoked; loop back to run tasks
             }
         } finally {
             log.tracef("Shutting down channel thread \"%s\"", this);
-            safeClose(selector);
+            safeClose(this.selector);
             getWorker().closeResource();
         }
     }
 
+    /**
+     * Replace the selector with a new one, moving every registered channel over with its interest set and handle.
+     * Must only be called from this thread.
+     */
+    private void rebuildSelector() {
+        final Selector oldSelector = selector;
+        final Selector newSelector;
+        try {
+            newSelector = getWorker().getXnio().mainSelectorCreator.open();
+        } catch (IOException e) {
+            selectorLog.selectorRebuildFailed(e);
+            return;
+        }
+        // registrations from other threads started after this point go to the new selector
+        selector = newSelector;
+        selectedKeySet = ARRAY_SELECTED_KEYS ? SelectedKeySet.install(newSelector) : null;
+        final SelectionKey[] keys;
+        synchronized (oldSelector) {
+            final Set<SelectionKey> keySet = oldSelector.keys();
+            synchronized (keySet) {
+                keys = keySet.toArray(new SelectionKey[keySet.size()]);
+            }
+        }
+        int moved = 0;
+        for (SelectionKey key : keys) {
+            Object attachment = key.attachment();
+            if (attachment == null) {
+                // another thread has registered the channel but not yet attached its handle
+                final long start = nanoTime();
+                while ((attachment = key.attachment()) == null && key.isValid() && nanoTime() - start < 100000000L) {
+                    Thread.yield();
+                }
+            }
+            try {
+                final int ops = key.interestOps();
+                final SelectionKey newKey = key.channel().register(newSelector, ops, attachment);
+                if (attachment instanceof NioHandle) {
+                    ((NioHandle) attachment).setSelectionKey(newKey);
+                }
+                // carry over any interest change made through the old key while the handle was being switched over
+                final int newOps = key.interestOps();
+                if (newOps != ops) {
+                    newKey.interestOps((newKey.interestOps() | (newOps & ~ops)) & ~(ops & ~newOps));
+                }
+                key.cancel();
+                // a handle attached to the old key before it was cancelled is switched over here; one attached
+                // afterwards switches itself over (see NioHandle.attach())
+                final Object lateAttachment = key.attachment();
+                if (lateAttachment != attachment) {
+                    newKey.attach(lateAttachment);
+                    if (lateAttachment instanceof NioHandle) {
+                        ((NioHandle) lateAttachment).setSelectionKey(newKey);
+                    }
+                }
+                moved ++;
+            } catch (CancelledKeyException ignored) {
+            } catch (ClosedChannelException ignored) {
+            } catch (Throwable t) {
+                selectorLog.tracef(t, "Failed to move key %s to new selector %s", key, newSelector);
+            }
+        }
+        selectorRebuilds ++;
+        selectorLog.debugf("Moved %d keys from selector %s to new selector %s", Integer.valueOf(moved), oldSelector, newSelector);
+        safeClose(oldSelector);
+    }
+
+    /**
+     * Poll the selector without blocking until a key is selected, a task is queued, the selector is woken up or the
+     * given time has elapsed, yielding the processor once before giving up.
+     *
+     * @param selector the selector
+     * @param workQueue the work queue
+     * @param spinNanos the amount of time to spin for
+     * @return {@code true} if there is something to do, {@code false} if the caller should block
+     * @throws IOException if selection fails
+     */
+    private boolean spin(final Selector selector, final TaskQueue workQueue, final long spinNanos) throws IOException {
+        final long start = nanoTime();
+        boolean yielded = false;
+        for (;;) {
+            final int selected = selector.selectNow();
+            // selectNow() consumes any pending wakeup, so clear the flag before looking at the queue; a wakeup may
+            // also mean that a sibling has stealable tasks for us
+            final boolean woken = wakeupPendingUpdater.getAndSet(this, 0) != 0;
+            if (selected > 0 || woken || ! workQueue.isEmpty()) {
+                return true;
+            }
+            if (nanoTime() - start >= spinNanos) {
+                if (yielded) {
+                    return false;
+                }
+                Thread.yield();
+                yielded = true;
+            }
+        }
+    }
+
+    /**
+     * Mark this thread as idle, so that stealable tasks submitted to it wake it up and those submitted to busy
+     * siblings may wake it to steal them.
+     *
+     * @return {@code true} if this thread may block, {@code false} if stealable tasks arrived in the meantime
+     */
+    private boolean enterIdle() {
+        idle = 1;
+        // pairs with the idle check in executeStealable()
+        return stealableQueue.isEmpty();
+    }
+
+    /**
+     * Run tasks submitted to the other threads of this worker with {@link #executeStealable(Runnable)}.
+     *
+     * @return the number of tasks run
+     */
+    private int steal() {
+        final WorkerThread[] all = getWorker().getAll();
+        final int number = getNumber();
+        int stolen = 0;
+        for (int i = 1; i < all.length && stolen < STEAL_BATCH; i ++) {
+            final ConcurrentLinkedQueue<Runnable> queue = all[(number + i) % all.length].stealableQueue;
+            Runnable task;
+            while (stolen < STEAL_BATCH && (task = queue.poll()) != null) {
+                // clear interrupt status
+                Thread.interrupted();
+                runTask(task);
+                stolen ++;
+            }
+        }
+        return stolen;
+    }
+
+    private void runTask(final Runnable task) {
+        if (slowHandlerNanos == 0L) {
+            safeRun(task);
+        } else {
+            handlerStarted(task, nanoTime());
+            safeRun(task);
+            runningSince = 0L;
+        }
+    }
+
+    private void handlerStarted(final Object handler, final long time) {
+        runningHandler = handler;
+        // never zero, which means idle
+        runningSince = time == 0L ? 1L : time;
+    }
+
+    private void handleReady(final SelectionKey key) {
+        final int ops;
+        try {
+            ops = key.interestOps();
+            if (ops != 0) {
+                selectorLog.tracef("Selected key %s for %s", key, key.channel());
+                final NioHandle handle = (NioHandle) key.attachment();
+                if (handle == null) {
+                    cancelKey(key);
+                } else {
+                    // clear interrupt status
+                    Thread.interrupted();
+                    handle.handleReady(key.readyOps());
+                }
+            }
+        } catch (CancelledKeyException ignored) {
+            selectorLog.tracef("Skipping selection of cancelled key %s", key);
+        } catch (Throwable t) {
+            selectorLog.tracef(t, "Unexpected failure of selection of key %s", key);
+        }
+    }
+
     private static void safeRun(final Runnable command) {
         if (command != null) try {
             log.tracef("Running task %s", command);
@@ -573,14 +1096,175 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         if ((state & SHUTDOWN) != 0) {
             throw log.threadExiting();
         }
-        synchronized (workLock) {
-            selectorWorkQueue.add(command);
-        }
+        selectorWorkQueue.offer(command);
         if(currentThread() != this) {
+            wakeupSelector();
+        }
+    }
+
+    public void executeStealable(final Runnable command) {
+        final ConcurrentLinkedQueue<Runnable> stealableQueue = this.stealableQueue;
+        if (stealableQueue == null) {
+            execute(command);
+            return;
+        }
+        if ((state & SHUTDOWN) != 0) {
+            throw log.threadExiting();
+        }
+        stealableQueue.offer(command);
+        if (idle != 0) {
+            wakeupSelector();
+        } else {
+            // busy (possibly the current thread); let an idle sibling take it instead
+            final WorkerThread[] all = getWorker().getAll();
+            final int number = getNumber();
+            for (int i = 1; i < all.length; i ++) {
+                final WorkerThread sibling = all[(number + i) % all.length];
+                if (sibling.idle != 0) {
+                    sibling.wakeupSelector();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wake up the selector from another thread, unless a wakeup is already pending for the current select cycle, in
+     * which case the thread is guaranteed to look at its work queue and interest sets again before it blocks.
+     * <p>
+     * This is one half of a handshake with the run loop: the submitter publishes its task with a volatile store and
+     * then reads the flag, while the I/O thread clears the flag and then re-examines its queue before blocking.  At
+     * least one side therefore sees the other's write.
+     */
+    void wakeupSelector() {
+        if (wakeupPending == 0 && wakeupPendingUpdater.compareAndSet(this, 0, 1)) {
             selector.wakeup();
+        } else {
+            suppressedWakeupsUpdater.incrementAndGet(this);
+        }
+    }
+
+    long getSuppressedWakeupCount() {
+        return suppressedWakeups;
+    }
+
+    long getSelectorRebuildCount() {
+        return selectorRebuilds;
+    }
+
+    /**
+     * Have this thread replace its selector before it next selects, as though the selector had been found to be
+     * spinning.  May be called from any thread.
+     */
+    void requestSelectorRebuild() {
+        rebuildRequested = true;
+        if (currentThread() != this) {
+            wakeupSelector();
         }
     }
 
+    void connectionOpened() {
+        connectionCountUpdater.incrementAndGet(this);
+    }
+
+    void connectionClosed() {
+        connectionCountUpdater.decrementAndGet(this);
+    }
+
+    int getConnectionCount() {
+        return connectionCount;
+    }
+
+    long getSlowHandlerThreshold() {
+        return slowHandlerNanos;
+    }
+
+    Object getRunningHandler() {
+        return runningHandler;
+    }
+
+    long getRunningSince() {
+        return runningSince;
+    }
+
+    void slowHandlerDetected() {
+        slowHandlers ++;
+    }
+
+    long getSlowHandlerCount() {
+        return slowHandlers;
+    }
+
+    long getSelectCount() {
+        return selectCount;
+    }
+
+    long getSelectTime() {
+        return selectTime;
+    }
+
+    long getHandlerTime() {
+        return handlerTime;
+    }
+
+    long getMaxHandlerTime() {
+        return maxHandlerTime;
+    }
+
+    long getTaskTime() {
+        return taskTime;
+    }
+
+    long getTasksExecuted() {
+        return tasksExecuted;
+    }
+
+    int getPendingDelayedTaskCount() {
+        if (timingWheel != null) {
+            return timingWheelSize;
+        }
+        synchronized (workLock) {
+            return delayWorkQueue.size();
+        }
+    }
+
+    int getRegisteredKeyCount() {
+        try {
+            return selector.keys().size();
+        } catch (ClosedSelectorException e) {
+            return 0;
+        }
+    }
+
+    private void updateRecentBusyTime(final long now, final long busy) {
+        long since = recentBusySince;
+        long recent = recentBusyTime;
+        final long halfLives = (now - since) >> BUSY_HALF_LIFE_SHIFT;
+        if (halfLives > 0L) {
+            recent = halfLives >= 63L ? 0L : recent >>> halfLives;
+            since += halfLives << BUSY_HALF_LIFE_SHIFT;
+            recentBusySince = since;
+        }
+        recentBusyTime = recent + busy;
+    }
+
+    /**
+     * Get the time this thread recently spent running tasks and handlers, where older activity counts for less.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the decayed busy time in nanoseconds
+     */
+    long getRecentBusyTime(final long now) {
+        final long since = recentBusySince;
+        final long recent = recentBusyTime;
+        final long halfLives = (now - since) >> BUSY_HALF_LIFE_SHIFT;
+        return halfLives <= 0L ? recent : halfLives >= 63L ? 0L : recent >>> halfLives;
+    }
+
+    public IoThreadStatistics getStatistics() {
+        return new IoThreadStatistics(selectCount, selectTime, handlerTime, taskTime, tasksExecuted, getPendingDelayedTaskCount(), getRegisteredKeyCount(), maxHandlerTime);
+    }
+
     void shutdown() {
         int oldState;
         do {
@@ -605,6 +1289,9 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             return Key.IMMEDIATE;
         }
         final long deadline = (nanoTime() - START_TIME) + Math.min(millis, LONGEST_DELAY) * 1000000L;
+        if (timingWheel != null) {
+            return timingWheel.schedule(command, deadline);
+        }
         final TimeKey key = new TimeKey(deadline, command);
         synchronized (workLock) {
             final TreeSet<TimeKey> queue = delayWorkQueue;
@@ -612,7 +1299,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             if (queue.iterator().next() == key) {
                 // we're the next one up; poke the selector to update its delay time
                 if(currentThread() != this) {
-                    selector.wakeup();
+                    wakeupSelector();
                 }
             }
             return key;
@@ -669,31 +1356,50 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             return channel.register(selector, 0);
         } else if (THREAD_SAFE_SELECTION_KEYS) {
             try {
-                return channel.register(selector, 0);
+                return register(channel);
             } finally {
-                selector.wakeup();
+                wakeupSelector();
             }
         } else {
             final SynchTask task = new SynchTask();
             queueTask(task);
             try {
                 // Prevent selector from sleeping until we're done!
-                selector.wakeup();
-                return channel.register(selector, 0);
+                wakeupSelector();
+                return register(channel);
             } finally {
                 task.done();
             }
         }
     }
 
-    void queueTask(final Runnable task) {
-        synchronized (workLock) {
-            selectorWorkQueue.add(task);
+    private SelectionKey register(final AbstractSelectableChannel channel) throws ClosedChannelException {
+        for (;;) {
+            final Selector selector = this.selector;
+            final SelectionKey key;
+            try {
+                key = channel.register(selector, 0);
+            } catch (ClosedSelectorException e) {
+                if (selector == this.selector) {
+                    throw e;
+                }
+                // rebuilt in the meantime
+                continue;
+            }
+            if (selector == this.selector) {
+                return key;
+            }
+            // rebuilt in the meantime; the key may or may not have been moved, so register again
+            key.cancel();
         }
     }
 
+    void queueTask(final Runnable task) {
+        selectorWorkQueue.offer(task);
+    }
+
     void cancelKey(final SelectionKey key) {
-        assert key.selector() == selector;
+        assert key.selector() == selector || ! key.isValid();
         final SelectableChannel channel = key.channel();
         if (currentThread() == this) {
             log.logf(FQCN, Logger.Level.TRACE, null, "Cancelling key %s of %s (same thread)", key, channel);
@@ -704,6 +1410,8 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                 } catch (IOException e) {
                     log.selectionError(e);
                 }
+                // selectNow() consumes any pending wakeup
+                wakeupPending = 0;
             } catch (Throwable t) {
                 log.logf(FQCN, Logger.Level.TRACE, t, "Error cancelling key %s of %s (same thread)", key, channel);
             }
@@ -713,7 +1421,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             queueTask(task);
             try {
                 // Prevent selector from sleeping until we're done!
-                selector.wakeup();
+                wakeupSelector();
                 key.cancel();
             } catch (Throwable t) {
                 log.logf(FQCN, Logger.Level.TRACE, t, "Error cancelling key %s of %s (same thread, old locking)", key, channel);
@@ -724,7 +1432,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             log.logf(FQCN, Logger.Level.TRACE, null, "Cancelling key %s of %s (other thread)", key, channel);
             try {
                 key.cancel();
-                selector.wakeup();
+                wakeupSelector();
             } catch (Throwable t) {
                 log.logf(FQCN, Logger.Level.TRACE, t, "Error cancelling key %s of %s (other thread)", key, channel);
             }
@@ -741,7 +1449,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             queueTask(task);
             try {
                 // Prevent selector from sleeping until we're done!
-                selector.wakeup();
+                wakeupSelector();
                 key.interestOps(key.interestOps() | ops);
             } catch (CancelledKeyException ignored) {
             } finally {
@@ -750,7 +1458,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         } else {
             try {
                 key.interestOps(key.interestOps() | ops);
-                selector.wakeup();
+                wakeupSelector();
             } catch (CancelledKeyException ignored) {
             }
         }
@@ -766,7 +1474,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             queueTask(task);
             try {
                 // Prevent selector from sleeping until we're done!
-                selector.wakeup();
+                wakeupSelector();
                 key.interestOps(key.interestOps() & ~ops);
             } catch (CancelledKeyException ignored) {
             } finally {
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.IoFuture;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+/**
+ * Test for replacing the selector of an I/O thread while it has registered channels.
+ */
+public class SelectorRebuildTestCase {
+
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private Socket client;
+
+    @Before
+    public void createWorker() throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", SelectorRebuildTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        IoUtils.safeClose(client);
+        IoUtils.safeClose(server);
+        worker.shutdown();
+        worker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    @Test
+    public void rebuildWithOpenConnections() throws Exception {
+        final WorkerThread thread = (WorkerThread) worker.getIoThread();
+        server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        echo(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, OptionMap.EMPTY);
+        server.resumeAccepts();
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        client = new Socket(address.getAddress(), address.getPort());
+        client.setSoTimeout(10000);
+        echo(client, 1);
+        final long rebuilds = thread.getSelectorRebuildCount();
+        // start a connection and request the rebuild from the I/O thread, so the connect is still pending when the
+        // thread moves its keys over
+        final AtomicReference<IoFuture<StreamConnection>> connectFuture = new AtomicReference<IoFuture<StreamConnection>>();
+        final CountDownLatch started = new CountDownLatch(1);
+        thread.execute(new Runnable() {
+            public void run() {
+                connectFuture.set(thread.openStreamConnection(address, null, OptionMap.EMPTY));
+                thread.requestSelectorRebuild();
+                started.countDown();
+            }
+        });
+        assertTrue(started.await(5L, TimeUnit.SECONDS));
+        final IoFuture<StreamConnection> future = connectFuture.get();
+        assertEquals(IoFuture.Status.DONE, future.await(10L, TimeUnit.SECONDS));
+        final StreamConnection connection = future.get();
+        try {
+            assertEquals(rebuilds + 1, thread.getSelectorRebuildCount());
+            // the connection accepted before the rebuild still gets read readiness
+            echo(client, 2);
+            // and so does the one opened across it
+            final ByteBuffer message = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+            while (message.hasRemaining()) {
+                connection.getSinkChannel().write(message);
+            }
+            final ByteBuffer reply = ByteBuffer.allocate(4);
+            final CountDownLatch replied = new CountDownLatch(1);
+            connection.getSourceChannel().setReadListener(new ChannelListener<ConduitStreamSourceChannel>() {
+                public void handleEvent(final ConduitStreamSourceChannel channel) {
+                    try {
+                        if (channel.read(reply) == -1 || ! reply.hasRemaining()) {
+                            channel.suspendReads();
+                            replied.countDown();
+                        }
+                    } catch (IOException e) {
+                        channel.suspendReads();
+                        replied.countDown();
+                    }
+                }
+            });
+            connection.getSourceChannel().resumeReads();
+            assertTrue(replied.await(10L, TimeUnit.SECONDS));
+            assertArrayEquals(new byte[] { 1, 2, 3, 4 }, reply.array());
+        } finally {
+            IoUtils.safeClose(connection);
+        }
+    }
+
+    private static void echo(final Socket socket, final int seed) throws IOException {
+        final byte[] message = new byte[100];
+        for (int i = 0; i < message.length; i ++) {
+            message[i] = (byte) (seed + i);
+        }
+        socket.getOutputStream().write(message);
+        final byte[] reply = new byte[message.length];
+        new DataInputStream(socket.getInputStream()).readFully(reply);
+        assertArrayEquals(message, reply);
+    }
+
+    private static void echo(final StreamConnection connection) {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        connection.getSourceChannel().setReadListener(new ChannelListener<ConduitStreamSourceChannel>() {
+            public void handleEvent(final ConduitStreamSourceChannel channel) {
+                try {
+                    int res;
+                    while ((res = channel.read(buffer)) > 0) {
+                        buffer.flip();
+                        // replies are small enough to fit in the socket buffer
+                        while (buffer.hasRemaining()) {
+                            connection.getSinkChannel().write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    if (res == -1) {
+                        IoUtils.safeClose(connection);
+                    }
+                } catch (IOException e) {
+                    IoUtils.safeClose(connection);
+                }
+            }
+        });
+        connection.getSourceChannel().resumeReads();
+    }
+}
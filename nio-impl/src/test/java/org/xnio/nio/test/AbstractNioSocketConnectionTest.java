@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Abstract test for a socket connection accepted by a single-threaded NIO worker, whose peer is a plain blocking
+ * {@link Socket}.
+ */
+public abstract class AbstractNioSocketConnectionTest {
+
+    protected XnioWorker worker;
+    protected AcceptingChannel<StreamConnection> server;
+    protected final BlockingQueue<StreamConnection> accepted = new ArrayBlockingQueue<StreamConnection>(10);
+    protected Socket client;
+
+    @Before
+    public void createWorker() throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", AbstractNioSocketConnectionTest.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        IoUtils.safeClose(client);
+        for (StreamConnection connection : accepted) {
+            IoUtils.safeClose(connection);
+        }
+        IoUtils.safeClose(server);
+        worker.shutdown();
+        worker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Start a server with the given options, connect {@link #client} to it and wait for the connection to be accepted.
+     *
+     * @param optionMap the server options
+     * @return the accepted connection
+     */
+    protected StreamConnection connect(final OptionMap optionMap) throws Exception {
+        server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, optionMap);
+        server.resumeAccepts();
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        client = new Socket(address.getAddress(), address.getPort());
+        client.setSoTimeout(10000);
+        final StreamConnection connection = accepted.poll(10L, TimeUnit.SECONDS);
+        assertTrue(connection != null);
+        return connection;
+    }
+
+    /**
+     * Read from {@link #client} until the given number of bytes has arrived or the stream ends.
+     *
+     * @param count the number of bytes to read
+     * @return the bytes read
+     */
+    protected byte[] readFully(final int count) throws IOException {
+        final InputStream in = client.getInputStream();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        while (out.size() < count) {
+            final int res = in.read(buffer, 0, Math.min(buffer.length, count - out.size()));
+            if (res == -1) {
+                break;
+            }
+            out.write(buffer, 0, res);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Generate test data which does not repeat over short distances.
+     *
+     * @param count the number of bytes
+     * @return the bytes
+     */
+    protected static byte[] bytes(final int count) {
+        final byte[] bytes = new byte[count];
+        for (int i = 0; i < bytes.length; i ++) {
+            bytes[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.AddressResolver;
+import org.xnio.ChannelListener;
+import org.xnio.IoFuture;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Test for the resolution of unresolved destination addresses away from the I/O threads.
+ */
+public class AsyncResolveTestCase {
+
+    private static final String HOST_NAME = "xnio.test";
+
+    private XnioWorker serverWorker;
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private InetAddress localhost;
+    private int port;
+
+    /**
+     * A stand-in resolver which knows a single host name.
+     */
+    private final AtomicInteger lookups = new AtomicInteger();
+    private volatile boolean lookupOnIoThread;
+    private volatile CountDownLatch lookupLatch;
+    private final AddressResolver resolver = new AddressResolver() {
+        public InetAddress[] resolve(final String hostName) throws UnknownHostException {
+            lookups.incrementAndGet();
+            if (Thread.currentThread() instanceof XnioIoThread) {
+                lookupOnIoThread = true;
+            }
+            final CountDownLatch latch = lookupLatch;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (("error." + HOST_NAME).equals(hostName)) {
+                throw new LookupError();
+            }
+            if (! HOST_NAME.equals(hostName)) {
+                throw new UnknownHostException(hostName);
+            }
+            return new InetAddress[] { localhost };
+        }
+    };
+
+    @SuppressWarnings("serial")
+    static final class LookupError extends Error {
+    }
+
+    @Before
+    public void createServer() throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", AsyncResolveTestCase.class.getClassLoader());
+        localhost = Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 });
+        serverWorker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+        server = serverWorker.createStreamConnectionServer(new InetSocketAddress(localhost, 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        IoUtils.safeClose(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, OptionMap.EMPTY);
+        server.resumeAccepts();
+        port = server.getLocalAddress(InetSocketAddress.class).getPort();
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        IoUtils.safeClose(server);
+        if (worker != null) {
+            worker.shutdown();
+            worker.awaitTermination(1L, TimeUnit.MINUTES);
+        }
+        serverWorker.shutdown();
+        serverWorker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    private void createWorker(final OptionMap extra) throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", AsyncResolveTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_RESOLVER, resolver).addAll(extra).getMap());
+    }
+
+    @Test
+    public void resolveAndCache() throws Exception {
+        createWorker(OptionMap.EMPTY);
+        final CountDownLatch latch = new CountDownLatch(1);
+        lookupLatch = latch;
+        final IoFuture<StreamConnection> future = worker.openStreamConnection(InetSocketAddress.createUnresolved(HOST_NAME, port), null, OptionMap.EMPTY);
+        // the I/O thread keeps running while the lookup is blocked
+        final CountDownLatch taskLatch = new CountDownLatch(1);
+        worker.getIoThread().execute(new Runnable() {
+            public void run() {
+                taskLatch.countDown();
+            }
+        });
+        assertTrue(taskLatch.await(10L, TimeUnit.SECONDS));
+        assertEquals(IoFuture.Status.WAITING, future.getStatus());
+        lookupLatch = null;
+        latch.countDown();
+        final StreamConnection connection = future.get();
+        assertEquals(new InetSocketAddress(localhost, port), connection.getPeerAddress());
+        IoUtils.safeClose(connection);
+        // the second connection uses the cached addresses
+        final StreamConnection second = worker.openStreamConnection(InetSocketAddress.createUnresolved(HOST_NAME, port), null, OptionMap.EMPTY).get();
+        IoUtils.safeClose(second);
+        assertEquals(1, lookups.get());
+        assertFalse(lookupOnIoThread);
+    }
+
+    @Test
+    public void noCache() throws Exception {
+        createWorker(OptionMap.create(Options.WORKER_RESOLVER_CACHE_TTL, 0));
+        for (int i = 0; i < 2; i ++) {
+            IoUtils.safeClose(worker.openStreamConnection(InetSocketAddress.createUnresolved(HOST_NAME, port), null, OptionMap.EMPTY).get());
+        }
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void negativeCache() throws Exception {
+        createWorker(OptionMap.EMPTY);
+        for (int i = 0; i < 2; i ++) {
+            try {
+                worker.openStreamConnection(InetSocketAddress.createUnresolved("unknown." + HOST_NAME, port), null, OptionMap.EMPTY).get();
+                fail("Expected UnknownHostException");
+            } catch (UnknownHostException expected) {
+            }
+        }
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void resolverError() throws Exception {
+        createWorker(OptionMap.EMPTY);
+        for (int i = 0; i < 2; i ++) {
+            final IoFuture<StreamConnection> future = worker.openStreamConnection(InetSocketAddress.createUnresolved("error." + HOST_NAME, port), null, OptionMap.EMPTY);
+            assertEquals(IoFuture.Status.FAILED, future.await(10L, TimeUnit.SECONDS));
+            assertTrue(future.getException().getCause() instanceof LookupError);
+        }
+        // a failed lookup is not cached
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void resolveOnIoThread() throws Exception {
+        createWorker(OptionMap.create(Options.WORKER_RESOLVE_ASYNC, false));
+        try {
+            worker.openStreamConnection(InetSocketAddress.createUnresolved("unknown." + HOST_NAME, port), null, OptionMap.EMPTY).get();
+            fail("Expected an unresolved address to fail");
+        } catch (IOException expected) {
+        } catch (RuntimeException expected) {
+        }
+        // the stand-in resolver is not consulted
+        assertEquals(0, lookups.get());
+    }
+}
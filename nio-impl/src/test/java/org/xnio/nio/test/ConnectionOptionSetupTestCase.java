@@ -222,7 +222,7 @@ public class ConnectionOptionSetupTestCase extends TcpServerTest {
         final Option<?>[] unsupportedOptions = OptionHelper.getNotSupportedOptions(Options.WORKER_ACCEPT_THREADS, 
                 Options.WORKER_ESTABLISH_WRITING, Options.REUSE_ADDRESSES, Options.RECEIVE_BUFFER,  Options.SEND_BUFFER,
                 Options.KEEP_ALIVE, Options.TCP_OOB_INLINE, Options.TCP_NODELAY, Options.READ_TIMEOUT,
-                Options.WRITE_TIMEOUT, Options.CONNECTION_HIGH_WATER, Options.CONNECTION_LOW_WATER);
+                Options.WRITE_TIMEOUT, Options.CONNECTION_HIGH_WATER, Options.CONNECTION_LOW_WATER, Options.CORK);
 
         // supported options
         final OptionMap.Builder optionMapBuilder = OptionMap.builder();
@@ -238,13 +238,13 @@ public class ConnectionOptionSetupTestCase extends TcpServerTest {
         optionMapBuilder.set(Options.WRITE_TIMEOUT, 27);
         optionMapBuilder.set(Options.CONNECTION_HIGH_WATER, 26);
         optionMapBuilder.set(Options.CONNECTION_LOW_WATER, 25);
+        optionMapBuilder.set(Options.CORK, false);
 
         // unsupported options
         optionMapBuilder.set(Options.ALLOW_BLOCKING, true);
         optionMapBuilder.set(Options.BACKLOG, 10000);
         optionMapBuilder.set(Options.BROADCAST, false);
         optionMapBuilder.set(Options.CLOSE_ABORT, true);
-        optionMapBuilder.set(Options.CORK, false);
         optionMapBuilder.set(Options.FILE_ACCESS, FileAccess.READ_ONLY);
         optionMapBuilder.set(Options.IP_TRAFFIC_CLASS, 20000);
         optionMapBuilder.set(Options.MAX_INBOUND_MESSAGE_SIZE, 30000);
@@ -314,6 +314,7 @@ public class ConnectionOptionSetupTestCase extends TcpServerTest {
         assertEquals(27, (int) server.getOption(Options.WRITE_TIMEOUT));
         assertEquals(26, (int) server.getOption(Options.CONNECTION_HIGH_WATER));
         assertEquals(25, (int) server.getOption(Options.CONNECTION_LOW_WATER));
+        assertFalse(server.getOption(Options.CORK));
 
         for (Option<?> option: unsupportedOptions) {
             assertNull("Non null value for option " + option + ": " + server.getOption(option), server.getOption(option));
@@ -330,6 +331,7 @@ public class ConnectionOptionSetupTestCase extends TcpServerTest {
         assertTrue(server.supportsOption(Options.WRITE_TIMEOUT));
         assertTrue(server.supportsOption(Options.CONNECTION_LOW_WATER));
         assertTrue(server.supportsOption(Options.CONNECTION_HIGH_WATER));
+        assertTrue(server.supportsOption(Options.CORK));
 
         assertTrue(server.setOption(Options.REUSE_ADDRESSES, false));
         // different OSes might change the value actually set in different ways, making these options essentially untestable
@@ -342,13 +344,13 @@ public class ConnectionOptionSetupTestCase extends TcpServerTest {
         assertEquals(27, (int) server.setOption(Options.WRITE_TIMEOUT, 21000000));
         assertEquals(25, (int) server.setOption(Options.CONNECTION_LOW_WATER, 190));
         assertEquals(190, (int) server.setOption(Options.CONNECTION_HIGH_WATER, 200));
+        assertFalse(server.setOption(Options.CORK, false));
 
         // unsupported options
         assertNull(server.setOption(Options.ALLOW_BLOCKING, true));
         assertNull(server.setOption(Options.BACKLOG, 10000));
         assertNull(server.setOption(Options.BROADCAST, false));
         assertNull(server.setOption(Options.CLOSE_ABORT, true));
-        assertNull(server.setOption(Options.CORK, false));
         assertNull(server.setOption(Options.FILE_ACCESS, FileAccess.READ_ONLY));
         assertNull(server.setOption(Options.IP_TRAFFIC_CLASS, 20000));
         assertNull(server.setOption(Options.MAX_INBOUND_MESSAGE_SIZE, 30000));
@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ReadTimeoutException;
+import org.xnio.channels.WriteTimeoutException;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+/**
+ * Test for read and write timeouts which are enforced while the application is not reading or writing.
+ */
+public class ConnectionTimeoutTestCase {
+
+    private static final String WORKER_NAME = "timeout-test";
+
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private final List<StreamConnection> accepted = Collections.synchronizedList(new ArrayList<StreamConnection>());
+    private final AtomicInteger bytesRead = new AtomicInteger();
+    private final AtomicInteger timeouts = new AtomicInteger();
+    private final CountDownLatch timeoutLatch = new CountDownLatch(1);
+
+    @Before
+    public void createWorker() throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", ConnectionTimeoutTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_NAME, WORKER_NAME).getMap());
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        synchronized (accepted) {
+            for (StreamConnection connection : accepted) {
+                IoUtils.safeClose(connection);
+            }
+        }
+        IoUtils.safeClose(server);
+        worker.shutdown();
+        worker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    private void createServer(final int readTimeout) throws IOException {
+        final ChannelListener<ConduitStreamSourceChannel> readListener = new ChannelListener<ConduitStreamSourceChannel>() {
+            public void handleEvent(final ConduitStreamSourceChannel channel) {
+                final ByteBuffer buffer = ByteBuffer.allocate(64);
+                try {
+                    int res;
+                    while ((res = channel.read(buffer)) > 0) {
+                        bytesRead.addAndGet(res);
+                        buffer.clear();
+                    }
+                    if (res == -1) {
+                        IoUtils.safeClose(channel);
+                    }
+                } catch (ReadTimeoutException e) {
+                    timeouts.incrementAndGet();
+                    timeoutLatch.countDown();
+                    IoUtils.safeClose(channel);
+                } catch (IOException e) {
+                    IoUtils.safeClose(channel);
+                }
+            }
+        };
+        createServer(OptionMap.create(Options.READ_TIMEOUT, readTimeout), new ChannelListener<StreamConnection>() {
+            public void handleEvent(final StreamConnection connection) {
+                connection.getSourceChannel().setReadListener(readListener);
+                connection.getSourceChannel().resumeReads();
+            }
+        });
+    }
+
+    private void createServer(final OptionMap optionMap, final ChannelListener<StreamConnection> acceptListener) throws IOException {
+        server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                        acceptListener.handleEvent(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, optionMap);
+        server.resumeAccepts();
+    }
+
+    private long getTimedOutConnectionCount() throws Exception {
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=" + ObjectName.quote(WORKER_NAME) + ",address=" + ObjectName.quote(String.valueOf(server.getLocalAddress())));
+        return ((Long) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TimedOutConnectionCount")).longValue();
+    }
+
+    private int getPendingDelayedTasks() throws Exception {
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=" + ObjectName.quote(WORKER_NAME) + ",thread=" + ObjectName.quote(worker.getIoThread().getName()));
+        return ((Integer) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "PendingDelayedTasks")).intValue();
+    }
+
+    private void awaitPendingDelayedTasks(final int count) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (getPendingDelayedTasks() != count && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(count, getPendingDelayedTasks());
+    }
+
+    @Test
+    public void silentPeer() throws Exception {
+        createServer(200);
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        final Socket client = new Socket(address.getAddress(), address.getPort());
+        try {
+            // the peer never sends anything, so only the timer can notice
+            assertTrue(timeoutLatch.await(10L, TimeUnit.SECONDS));
+            assertEquals(1, timeouts.get());
+            assertEquals(1L, getTimedOutConnectionCount());
+        } finally {
+            IoUtils.safeClose(client);
+        }
+    }
+
+    @Test
+    public void activePeer() throws Exception {
+        createServer(500);
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        final Socket client = new Socket(address.getAddress(), address.getPort());
+        try {
+            final OutputStream out = client.getOutputStream();
+            // keep sending for several timeout periods
+            for (int i = 0; i < 20; i ++) {
+                out.write(i);
+                out.flush();
+                Thread.sleep(100L);
+            }
+            assertEquals(0, timeouts.get());
+            assertEquals(0L, getTimedOutConnectionCount());
+            // then go quiet
+            assertTrue(timeoutLatch.await(10L, TimeUnit.SECONDS));
+            assertEquals(20, bytesRead.get());
+            assertEquals(1L, getTimedOutConnectionCount());
+        } finally {
+            IoUtils.safeClose(client);
+        }
+    }
+
+    @Test
+    public void closeCancelsTimer() throws Exception {
+        createServer(60000);
+        final int pending = getPendingDelayedTasks();
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        final Socket client = new Socket(address.getAddress(), address.getPort());
+        try {
+            // resuming reads arms the timer
+            awaitPendingDelayedTasks(pending + 1);
+            synchronized (accepted) {
+                IoUtils.safeClose(accepted.get(0));
+            }
+            // and closing the connection must not leave it behind until it expires
+            awaitPendingDelayedTasks(pending);
+            assertEquals(0, timeouts.get());
+        } finally {
+            IoUtils.safeClose(client);
+        }
+    }
+
+    @Test
+    public void silentReader() throws Exception {
+        final ChannelListener<ConduitStreamSinkChannel> writeListener = new ChannelListener<ConduitStreamSinkChannel>() {
+            public void handleEvent(final ConduitStreamSinkChannel channel) {
+                final ByteBuffer buffer = ByteBuffer.allocate(65536);
+                try {
+                    // fill the socket buffers; writes stay resumed once they are full
+                    while (channel.write(buffer) > 0) {
+                        buffer.clear();
+                    }
+                } catch (WriteTimeoutException e) {
+                    timeouts.incrementAndGet();
+                    timeoutLatch.countDown();
+                    IoUtils.safeClose(channel);
+                } catch (IOException e) {
+                    IoUtils.safeClose(channel);
+                }
+            }
+        };
+        createServer(OptionMap.create(Options.WRITE_TIMEOUT, 200), new ChannelListener<StreamConnection>() {
+            public void handleEvent(final StreamConnection connection) {
+                connection.getSinkChannel().setWriteListener(writeListener);
+                connection.getSinkChannel().resumeWrites();
+            }
+        });
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        final Socket client = new Socket();
+        try {
+            client.setReceiveBufferSize(4096);
+            client.connect(address);
+            // the peer never reads, so the writer stalls and only the timer can notice
+            assertTrue(timeoutLatch.await(10L, TimeUnit.SECONDS));
+            assertEquals(1, timeouts.get());
+            assertEquals(1L, getTimedOutConnectionCount());
+        } finally {
+            IoUtils.safeClose(client);
+        }
+    }
+}
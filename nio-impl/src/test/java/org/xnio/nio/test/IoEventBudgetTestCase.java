@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+/**
+ * Test for the per-event I/O budget of socket connections.
+ */
+public class IoEventBudgetTestCase extends AbstractNioSocketConnectionTest {
+
+    private static final int BUDGET = 4096;
+    private static final int CHUNK = 1024;
+
+    private static void recordMax(final AtomicInteger max, final int value) {
+        if (value > max.get()) {
+            max.set(value);
+        }
+    }
+
+    @Test
+    public void readsYield() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.IO_EVENT_BUDGET, BUDGET));
+        assertEquals(BUDGET, (int) connection.getOption(Options.IO_EVENT_BUDGET));
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final AtomicInteger maxPerCall = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+        connection.getSourceChannel().setReadListener(new ChannelListener<ConduitStreamSourceChannel>() {
+            public void handleEvent(final ConduitStreamSourceChannel channel) {
+                int total = 0;
+                try {
+                    int res;
+                    do {
+                        buffer.clear();
+                        res = channel.read(buffer);
+                        if (res > 0) {
+                            total += res;
+                            received.write(buffer.array(), 0, res);
+                        }
+                    } while (res > 0);
+                    if (res == -1) {
+                        channel.suspendReads();
+                        done.countDown();
+                    } else {
+                        // a connection which yielded is still resumed
+                        assertTrue(channel.isReadResumed());
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                    channel.suspendReads();
+                    done.countDown();
+                }
+                recordMax(maxPerCall, total);
+            }
+        });
+        connection.getSourceChannel().resumeReads();
+        final byte[] bytes = bytes(200000);
+        client.getOutputStream().write(bytes);
+        client.shutdownOutput();
+        assertTrue(done.await(10L, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertArrayEquals(bytes, received.toByteArray());
+        // the budget is checked before each read
+        assertTrue("Read " + maxPerCall.get() + " bytes in one event", maxPerCall.get() < BUDGET + CHUNK);
+    }
+
+    @Test
+    public void writesYield() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.IO_EVENT_BUDGET, BUDGET));
+        final byte[] bytes = bytes(200000);
+        final ByteBuffer source = ByteBuffer.wrap(bytes);
+        final AtomicInteger maxPerCall = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        connection.getSinkChannel().setWriteListener(new ChannelListener<ConduitStreamSinkChannel>() {
+            public void handleEvent(final ConduitStreamSinkChannel channel) {
+                int total = 0;
+                try {
+                    int res;
+                    do {
+                        final ByteBuffer chunk = source.duplicate();
+                        chunk.limit(Math.min(chunk.limit(), chunk.position() + CHUNK));
+                        res = channel.write(chunk);
+                        source.position(chunk.position());
+                        total += res;
+                    } while (res > 0 && source.hasRemaining());
+                    if (! source.hasRemaining()) {
+                        channel.suspendWrites();
+                        channel.shutdownWrites();
+                        channel.flush();
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                    channel.suspendWrites();
+                }
+                recordMax(maxPerCall, total);
+            }
+        });
+        connection.getSinkChannel().resumeWrites();
+        final InputStream in = client.getInputStream();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int res;
+        while ((res = in.read(buffer)) != -1) {
+            received.write(buffer, 0, res);
+        }
+        assertNull(failure.get());
+        assertArrayEquals(bytes, received.toByteArray());
+        assertTrue("Wrote " + maxPerCall.get() + " bytes in one event", maxPerCall.get() < BUDGET + CHUNK);
+    }
+
+    @Test
+    public void budgetOutOfRange() throws Exception {
+        final StreamConnection connection = connect(OptionMap.EMPTY);
+        assertEquals(0, (int) connection.getOption(Options.IO_EVENT_BUDGET));
+        try {
+            connection.setOption(Options.IO_EVENT_BUDGET, -1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
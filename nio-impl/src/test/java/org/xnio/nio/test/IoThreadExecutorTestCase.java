@@ -0,0 +1,386 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xnio.ChannelPipe;
+import org.xnio.IoThreadStatistics;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+
+/**
+ * Test for task execution on NIO I/O threads.
+ */
+public class IoThreadExecutorTestCase {
+
+    private XnioWorker worker;
+
+    private XnioWorker createWorker(final OptionMap optionMap) throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadExecutorTestCase.class.getClassLoader());
+        worker = xnio.createWorker(optionMap);
+        return worker;
+    }
+
+    @After
+    public void destroyWorker() throws InterruptedException {
+        if (worker != null) {
+            worker.shutdown();
+            worker.awaitTermination(1L, TimeUnit.MINUTES);
+            worker = null;
+        }
+    }
+
+    @Test
+    public void concurrentExecute() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true)).getIoThread();
+        final int producers = 8;
+        final int tasksPerProducer = 20000;
+        final CountDownLatch latch = new CountDownLatch(producers * tasksPerProducer);
+        final int[] lastSeen = new int[producers];
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i ++) {
+            final int producer = i;
+            lastSeen[producer] = -1;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < tasksPerProducer; j ++) {
+                        final int seq = j;
+                        ioThread.execute(new Runnable() {
+                            public void run() {
+                                // only ever touched by the I/O thread
+                                if (lastSeen[producer] != seq - 1) {
+                                    outOfOrder.incrementAndGet();
+                                }
+                                lastSeen[producer] = seq;
+                                latch.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(latch.await(30L, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder.get());
+    }
+
+    @Test
+    public void executeAfterPrecise() throws Exception {
+        checkExecuteAfter(createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true)).getIoThread());
+    }
+
+    @Test
+    public void executeAfterTimingWheel() throws Exception {
+        checkExecuteAfter(createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_TIMER_TICK, 5).getMap()).getIoThread());
+    }
+
+    @Test
+    public void executeAfterTimingWheelFromIoThread() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_TIMER_TICK, 1).getMap()).getIoThread();
+        final int count = 200;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicInteger early = new AtomicInteger();
+        final AtomicInteger cancelledRan = new AtomicInteger();
+        ioThread.execute(new Runnable() {
+            public void run() {
+                for (int i = 0; i < count; i ++) {
+                    // spread over several levels of the wheel
+                    final long delay = (i * 37L) % 400L;
+                    final long start = System.nanoTime();
+                    ioThread.executeAfter(new Runnable() {
+                        public void run() {
+                            if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                                early.incrementAndGet();
+                            }
+                            latch.countDown();
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                    final XnioExecutor.Key key = ioThread.executeAfter(new Runnable() {
+                        public void run() {
+                            cancelledRan.incrementAndGet();
+                        }
+                    }, delay + 1L, TimeUnit.MILLISECONDS);
+                    key.remove();
+                }
+            }
+        });
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        Thread.sleep(50L);
+        assertEquals(0, early.get());
+        assertEquals(0, cancelledRan.get());
+    }
+
+    @Test
+    public void spinningSelect() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_IO_SPIN_TIME, 500).getMap()).getIoThread();
+        for (int i = 0; i < 100; i ++) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            ioThread.execute(new Runnable() {
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            if (i % 10 == 0) {
+                // let the thread give up spinning and block
+                Thread.sleep(5L);
+            }
+        }
+        checkExecuteAfter(ioThread);
+    }
+
+    private void checkExecuteAfter(final XnioIoThread ioThread) throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final AtomicLong ranAt = new AtomicLong();
+        final long start = System.nanoTime();
+        ioThread.executeAfter(new Runnable() {
+            public void run() {
+                ranAt.set(System.nanoTime());
+                ran.countDown();
+            }
+        }, 100L, TimeUnit.MILLISECONDS);
+        final AtomicInteger cancelledRan = new AtomicInteger();
+        final XnioExecutor.Key key = ioThread.executeAfter(new Runnable() {
+            public void run() {
+                cancelledRan.incrementAndGet();
+            }
+        }, 50L, TimeUnit.MILLISECONDS);
+        assertTrue(key.remove());
+        assertFalse(key.remove());
+        final CountDownLatch repeated = new CountDownLatch(3);
+        final XnioExecutor.Key repeatKey = ioThread.executeAtInterval(new Runnable() {
+            public void run() {
+                repeated.countDown();
+            }
+        }, 20L, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(5L, TimeUnit.SECONDS));
+        assertTrue(ranAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(100L));
+        assertTrue(repeated.await(5L, TimeUnit.SECONDS));
+        repeatKey.remove();
+        assertEquals(0, cancelledRan.get());
+    }
+
+    @Test
+    public void coalescedWakeups() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_NAME, "wakeup-test").getMap()).getIoThread();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ioThread.execute(new Runnable() {
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(5L, TimeUnit.SECONDS));
+        final int count = 1000;
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i ++) {
+            ioThread.execute(new Runnable() {
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        release.countDown();
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"wakeup-test\"");
+        final long suppressed = ((Long) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SuppressedWakeupCount")).longValue();
+        // only the first submission of the burst needed to wake the selector
+        assertTrue(suppressed >= count - 1);
+    }
+
+    @Test
+    public void noStrandedTasks() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true)).getIoThread();
+        final int producers = 8;
+        final int rounds = 2000;
+        final CyclicBarrier barrier = new CyclicBarrier(producers);
+        final AtomicInteger stranded = new AtomicInteger();
+        final Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i ++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < rounds; j ++) {
+                            // submit together so that some submissions find a wakeup already pending
+                            barrier.await();
+                            final CountDownLatch ran = new CountDownLatch(1);
+                            ioThread.execute(new Runnable() {
+                                public void run() {
+                                    ran.countDown();
+                                }
+                            });
+                            // nothing else will wake the selector, so a lost wakeup leaves the task stranded
+                            if (! ran.await(5L, TimeUnit.SECONDS)) {
+                                stranded.incrementAndGet();
+                                barrier.reset();
+                                return;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (BrokenBarrierException ignored) {
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, stranded.get());
+    }
+
+    @Test
+    public void statistics() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_NAME, "stats-test").getMap()).getIoThread();
+        final int count = 100;
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i ++) {
+            ioThread.execute(new Runnable() {
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        // the counters are published once the thread has run all of its tasks
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (ioThread.getStatistics().getTasksExecuted() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1L);
+        }
+        final XnioExecutor.Key key = ioThread.executeAfter(new Runnable() {
+            public void run() {
+            }
+        }, 1L, TimeUnit.HOURS);
+        final ChannelPipe<StreamConnection, StreamConnection> pipe = ioThread.createFullDuplexPipeConnection();
+        try {
+            final IoThreadStatistics statistics = ioThread.getStatistics();
+            assertTrue(statistics.getTasksExecuted() >= count);
+            assertTrue(statistics.getSelectCount() > 0L);
+            assertTrue(statistics.getPendingDelayedTasks() >= 1);
+            assertTrue(statistics.getRegisteredKeyCount() >= 4);
+            assertTrue(statistics.getMaxHandlerTime() <= statistics.getHandlerTime());
+            final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"stats-test\",thread=" + ObjectName.quote(ioThread.getName()));
+            final long tasksExecuted = ((Long) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TasksExecuted")).longValue();
+            assertTrue(tasksExecuted >= count);
+        } finally {
+            key.remove();
+            IoUtils.safeClose(pipe.getLeftSide());
+            IoUtils.safeClose(pipe.getRightSide());
+        }
+    }
+
+    @Test
+    public void slowHandler() throws Exception {
+        final XnioIoThread ioThread = createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_NAME, "slow-test").set(Options.WORKER_SLOW_HANDLER_THRESHOLD, 50).getMap()).getIoThread();
+        final CountDownLatch latch = new CountDownLatch(1);
+        ioThread.execute(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(300L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"slow-test\",thread=" + ObjectName.quote(ioThread.getName()));
+        // reported once, while it was still running
+        assertEquals(1L, ((Long) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SlowHandlerCount")).longValue());
+    }
+
+    @Test
+    public void workStealing() throws Exception {
+        final XnioWorker worker = createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 2).set(Options.THREAD_DAEMON, true).set(Options.WORKER_IO_WORK_STEALING, true).getMap());
+        final XnioIoThread busyThread = worker.getIoThread();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        busyThread.execute(new Runnable() {
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(5L, TimeUnit.SECONDS));
+        try {
+            final int count = 100;
+            final CountDownLatch latch = new CountDownLatch(count);
+            final AtomicInteger ranOnBusyThread = new AtomicInteger();
+            for (int i = 0; i < count; i ++) {
+                busyThread.executeStealable(new Runnable() {
+                    public void run() {
+                        if (Thread.currentThread() == busyThread) {
+                            ranOnBusyThread.incrementAndGet();
+                        }
+                        latch.countDown();
+                    }
+                });
+            }
+            // the sibling takes the tasks while the busy thread is still blocked
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            assertEquals(0, ranOnBusyThread.get());
+        } finally {
+            release.countDown();
+        }
+        // tasks are still run by their own thread when it is idle
+        final CountDownLatch ran = new CountDownLatch(1);
+        busyThread.executeStealable(new Runnable() {
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5L, TimeUnit.SECONDS));
+    }
+}
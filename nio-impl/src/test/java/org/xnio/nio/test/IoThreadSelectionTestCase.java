@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xnio.ChannelPipe;
+import org.xnio.IoFuture;
+import org.xnio.IoThreadSelection;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+
+/**
+ * Test for the I/O thread selection policies of the NIO worker.
+ */
+public class IoThreadSelectionTestCase {
+
+    private static final int THREADS = 4;
+
+    private XnioWorker worker;
+
+    private XnioWorker createWorker(final IoThreadSelection selection) throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadSelectionTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, THREADS).set(Options.THREAD_DAEMON, true).set(Options.WORKER_IO_THREAD_SELECTION, selection).getMap());
+        return worker;
+    }
+
+    @After
+    public void destroyWorker() throws InterruptedException {
+        if (worker != null) {
+            worker.shutdown();
+            worker.awaitTermination(1L, TimeUnit.MINUTES);
+            worker = null;
+        }
+    }
+
+    @Test
+    public void roundRobin() throws Exception {
+        final XnioWorker worker = createWorker(IoThreadSelection.ROUND_ROBIN);
+        final XnioIoThread[] first = new XnioIoThread[THREADS];
+        for (int i = 0; i < THREADS; i ++) {
+            first[i] = worker.getIoThread();
+            for (int j = 0; j < i; j ++) {
+                assertNotSame(first[j], first[i]);
+            }
+        }
+        for (int i = 0; i < THREADS * 3; i ++) {
+            assertSame(first[i % THREADS], worker.getIoThread());
+        }
+    }
+
+    @Test
+    public void callerAffinity() throws Exception {
+        final XnioWorker worker = createWorker(IoThreadSelection.CALLER_AFFINITY);
+        // calls from other threads fall back to random selection
+        final Set<XnioIoThread> threads = new HashSet<XnioIoThread>();
+        for (int i = 0; i < 10000 && threads.size() < THREADS; i ++) {
+            threads.add(worker.getIoThread());
+        }
+        assertEquals(THREADS, threads.size());
+        for (final XnioIoThread ioThread : threads) {
+            final AtomicReference<XnioIoThread> chosen = new AtomicReference<XnioIoThread>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            ioThread.execute(new Runnable() {
+                public void run() {
+                    chosen.set(worker.getIoThread());
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            assertSame(ioThread, chosen.get());
+        }
+    }
+
+    @Test
+    public void leastConnections() throws Exception {
+        final XnioWorker worker = createWorker(IoThreadSelection.LEAST_CONNECTIONS);
+        final List<ChannelPipe<StreamConnection, StreamConnection>> pipes = new ArrayList<ChannelPipe<StreamConnection, StreamConnection>>();
+        try {
+            final Map<XnioIoThread, Integer> counts = new HashMap<XnioIoThread, Integer>();
+            for (int i = 0; i < THREADS * 2; i ++) {
+                final ChannelPipe<StreamConnection, StreamConnection> pipe = worker.createFullDuplexPipeConnection();
+                pipes.add(pipe);
+                final XnioIoThread thread = pipe.getLeftSide().getIoThread();
+                final Integer count = counts.get(thread);
+                counts.put(thread, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+            }
+            assertEquals(THREADS, counts.size());
+            for (Integer count : counts.values()) {
+                assertEquals(2, count.intValue());
+            }
+            // free up one thread; it must be chosen next
+            final XnioIoThread freed = pipes.get(0).getLeftSide().getIoThread();
+            for (ChannelPipe<StreamConnection, StreamConnection> pipe : pipes) {
+                if (pipe.getLeftSide().getIoThread() == freed) {
+                    IoUtils.safeClose(pipe.getLeftSide());
+                    IoUtils.safeClose(pipe.getRightSide());
+                }
+            }
+            final ChannelPipe<StreamConnection, StreamConnection> pipe = worker.createFullDuplexPipeConnection();
+            pipes.add(pipe);
+            assertSame(freed, pipe.getLeftSide().getIoThread());
+        } finally {
+            for (ChannelPipe<StreamConnection, StreamConnection> pipe : pipes) {
+                IoUtils.safeClose(pipe.getLeftSide());
+                IoUtils.safeClose(pipe.getRightSide());
+            }
+        }
+    }
+
+    @Test
+    public void leastBusy() throws Exception {
+        final XnioWorker worker = createWorker(IoThreadSelection.LEAST_BUSY);
+        final XnioIoThread busy = worker.getIoThread();
+        final CountDownLatch latch = new CountDownLatch(1);
+        busy.execute(new Runnable() {
+            public void run() {
+                final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50L);
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        // give the thread a moment to account for the task
+        Thread.sleep(10L);
+        for (int i = 0; i < THREADS * 4; i ++) {
+            assertNotSame(busy, worker.getIoThread());
+        }
+    }
+
+    @Test
+    public void failedConnectsAreNotCounted() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadSelectionTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_NAME, "count-test").getMap());
+        final XnioIoThread ioThread = worker.getIoThread();
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"count-test\",thread=" + ObjectName.quote(ioThread.getName()));
+        final ServerSocket serverSocket = new ServerSocket(0, 50, Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }));
+        try {
+            final InetSocketAddress address = (InetSocketAddress) serverSocket.getLocalSocketAddress();
+            for (int i = 0; i < 10; i ++) {
+                // binding to the listening address fails after the connection object has been created
+                final IoFuture<StreamConnection> future = ioThread.openStreamConnection(address, address, null, null, OptionMap.EMPTY);
+                assertEquals(IoFuture.Status.FAILED, future.await(5L, TimeUnit.SECONDS));
+            }
+            assertEquals(Integer.valueOf(0), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ConnectionCount"));
+        } finally {
+            IoUtils.safeClose(serverSocket);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.AddressResolver;
+import org.xnio.ChannelListener;
+import org.xnio.IoFuture;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Test for connecting to the first reachable of several candidate addresses.
+ */
+public class MultipleAddressConnectTestCase {
+
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private InetAddress localhost;
+    private InetSocketAddress serverAddress;
+    private InetSocketAddress refusingAddress;
+
+    @Before
+    public void createServer() throws IOException {
+        localhost = Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 });
+        final Xnio xnio = Xnio.getInstance("nio", MultipleAddressConnectTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, 1).set(Options.THREAD_DAEMON, true).set(Options.WORKER_RESOLVER, new AddressResolver() {
+            public InetAddress[] resolve(final String hostName) throws UnknownHostException {
+                // the first address refuses connections
+                return new InetAddress[] { Inet4Address.getByAddress(new byte[] { 127, 0, 0, 2 }), localhost };
+            }
+        }).getMap());
+        server = worker.createStreamConnectionServer(new InetSocketAddress(localhost, 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        IoUtils.safeClose(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, OptionMap.EMPTY);
+        server.resumeAccepts();
+        serverAddress = server.getLocalAddress(InetSocketAddress.class);
+        final ServerSocket closed = new ServerSocket(0, 50, localhost);
+        refusingAddress = new InetSocketAddress(localhost, closed.getLocalPort());
+        closed.close();
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        IoUtils.safeClose(server);
+        worker.shutdown();
+        worker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    @Test
+    public void failedAttemptStartsNext() throws Exception {
+        final AtomicReference<StreamConnection> opened = new AtomicReference<StreamConnection>();
+        final CountDownLatch openLatch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        // a long delay, which a refused attempt must not wait for
+        final IoFuture<StreamConnection> future = worker.openStreamConnection(Arrays.asList(refusingAddress, serverAddress), new ChannelListener<StreamConnection>() {
+            public void handleEvent(final StreamConnection channel) {
+                opened.set(channel);
+                openLatch.countDown();
+            }
+        }, null, OptionMap.create(Options.CONNECT_ATTEMPT_DELAY, 60000));
+        final StreamConnection connection = future.get();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30L));
+        assertEquals(serverAddress, connection.getPeerAddress());
+        assertTrue(openLatch.await(10L, TimeUnit.SECONDS));
+        assertEquals(connection, opened.get());
+        IoUtils.safeClose(connection);
+    }
+
+    @Test
+    public void allAttemptsFail() throws Exception {
+        final IoFuture<StreamConnection> future = worker.openStreamConnection(Arrays.asList(refusingAddress, refusingAddress), null, null, OptionMap.create(Options.CONNECT_ATTEMPT_DELAY, 10));
+        assertEquals(IoFuture.Status.FAILED, future.await(30L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void singleAddress() throws Exception {
+        final StreamConnection connection = worker.openStreamConnection(Arrays.asList(serverAddress), null, null, OptionMap.EMPTY).get();
+        assertEquals(serverAddress, connection.getPeerAddress());
+        IoUtils.safeClose(connection);
+    }
+
+    @Test
+    public void resolvedHostAddresses() throws Exception {
+        final StreamConnection connection = worker.openStreamConnection(InetSocketAddress.createUnresolved("xnio.test", serverAddress.getPort()), null, OptionMap.EMPTY).get();
+        assertEquals(serverAddress, connection.getPeerAddress());
+        IoUtils.safeClose(connection);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+/**
+ * Test for adaptive read-ahead of socket connections.
+ */
+public class ReadAheadTestCase extends AbstractNioSocketConnectionTest {
+
+    @Test
+    public void readOncePerEvent() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.READ_AHEAD, true, Options.READ_AHEAD_BUDGET, 8192));
+        assertEquals(Boolean.TRUE, connection.getOption(Options.READ_AHEAD));
+        assertEquals(8192, (int) connection.getOption(Options.READ_AHEAD_BUDGET));
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final ByteBuffer buffer = ByteBuffer.allocate(100);
+        connection.getSourceChannel().setReadListener(new ChannelListener<ConduitStreamSourceChannel>() {
+            public void handleEvent(final ConduitStreamSourceChannel channel) {
+                try {
+                    // like many protocols, read only once per call
+                    buffer.clear();
+                    final int res = channel.read(buffer);
+                    if (res == -1) {
+                        channel.suspendReads();
+                        done.countDown();
+                    } else {
+                        received.write(buffer.array(), 0, res);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                    channel.suspendReads();
+                    done.countDown();
+                }
+            }
+        });
+        connection.getSourceChannel().resumeReads();
+        final byte[] bytes = bytes(200000);
+        final OutputStream out = client.getOutputStream();
+        out.write(bytes);
+        client.shutdownOutput();
+        assertTrue(done.await(10L, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertArrayEquals(bytes, received.toByteArray());
+    }
+
+    @Test
+    public void heldBytesAfterResume() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.READ_AHEAD, true));
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final BlockingQueue<Object> reads = new ArrayBlockingQueue<Object>(1);
+        final ByteBuffer buffer = ByteBuffer.allocate(10);
+        connection.getSourceChannel().setReadListener(new ChannelListener<ConduitStreamSourceChannel>() {
+            public void handleEvent(final ConduitStreamSourceChannel channel) {
+                channel.suspendReads();
+                try {
+                    buffer.clear();
+                    final int res = channel.read(buffer);
+                    if (res > 0) {
+                        received.write(buffer.array(), 0, res);
+                    }
+                    reads.add(Integer.valueOf(res));
+                } catch (Throwable t) {
+                    reads.add(t);
+                }
+            }
+        });
+        final byte[] bytes = bytes(200);
+        client.getOutputStream().write(bytes);
+        // everything arrives in the first read; the rest is delivered without further socket readiness
+        while (received.size() < bytes.length) {
+            connection.getSourceChannel().resumeReads();
+            final Object res = reads.poll(10L, TimeUnit.SECONDS);
+            if (res == null) {
+                fail("No read after resuming with " + received.size() + " bytes received");
+            } else if (res instanceof Throwable) {
+                throw new AssertionError(res);
+            }
+        }
+        assertArrayEquals(bytes, received.toByteArray());
+    }
+
+    @Test
+    public void budgetOutOfRange() throws Exception {
+        final StreamConnection connection = connect(OptionMap.EMPTY);
+        assertEquals(Boolean.FALSE, connection.getOption(Options.READ_AHEAD));
+        assertEquals(65536, (int) connection.getOption(Options.READ_AHEAD_BUDGET));
+        try {
+            connection.setOption(Options.READ_AHEAD_BUDGET, 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
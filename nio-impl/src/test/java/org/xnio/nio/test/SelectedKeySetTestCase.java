@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+/**
+ * Test for dispatching of selected keys by the NIO I/O threads.  The build runs this test once with the default
+ * selected-key handling and once with {@code xnio.nio.array-selected-keys} set, so both the copying and the
+ * array-backed key sets see traffic on several connections at once.
+ */
+public class SelectedKeySetTestCase {
+
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+
+    @Before
+    public void createWorker() throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", SelectedKeySetTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        IoUtils.safeClose(server);
+        worker.shutdown();
+        worker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    @Test
+    public void echoOnSeveralConnections() throws Exception {
+        server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        echo(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, OptionMap.EMPTY);
+        server.resumeAccepts();
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        final int clients = 16;
+        final int rounds = 200;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i ++) {
+            final int client = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    Socket socket = null;
+                    try {
+                        socket = new Socket(address.getAddress(), address.getPort());
+                        socket.setSoTimeout(10000);
+                        final OutputStream out = socket.getOutputStream();
+                        final DataInputStream in = new DataInputStream(socket.getInputStream());
+                        for (int j = 0; j < rounds; j ++) {
+                            final byte[] message = new byte[1 + (client * 7 + j * 13) % 500];
+                            for (int k = 0; k < message.length; k ++) {
+                                message[k] = (byte) (client + j + k);
+                            }
+                            out.write(message);
+                            final byte[] reply = new byte[message.length];
+                            in.readFully(reply);
+                            assertArrayEquals(message, reply);
+                        }
+                        socket.shutdownOutput();
+                        assertEquals(-1, in.read());
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        IoUtils.safeClose(socket);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static void echo(final StreamConnection connection) {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        connection.getSourceChannel().setReadListener(new ChannelListener<ConduitStreamSourceChannel>() {
+            public void handleEvent(final ConduitStreamSourceChannel channel) {
+                try {
+                    int res;
+                    while ((res = channel.read(buffer)) > 0) {
+                        buffer.flip();
+                        // the client waits for each reply before writing again, so the reply fits in the socket buffer
+                        while (buffer.hasRemaining()) {
+                            connection.getSinkChannel().write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    if (res == -1) {
+                        IoUtils.safeClose(connection);
+                    }
+                } catch (IOException e) {
+                    IoUtils.safeClose(connection);
+                }
+            }
+        });
+        connection.getSourceChannel().resumeReads();
+    }
+}
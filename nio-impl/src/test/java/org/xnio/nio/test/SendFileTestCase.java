@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
+import org.xnio.IoFuture;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.channels.Channels;
+import org.xnio.channels.FileSendFuture;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+
+/**
+ * Test for {@link Channels#sendFile(org.xnio.channels.StreamSinkChannel, FileChannel, long, long, long)} on socket
+ * connections.
+ */
+public class SendFileTestCase extends AbstractNioSocketConnectionTest {
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel fileChannel;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("send", ".bin");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        fileChannel = randomAccessFile.getChannel();
+    }
+
+    @After
+    public void deleteFile() {
+        IoUtils.safeClose(fileChannel);
+        IoUtils.safeClose(randomAccessFile);
+        file.delete();
+    }
+
+    private byte[] writeFile(final int size) throws IOException {
+        final byte[] bytes = bytes(size);
+        randomAccessFile.write(bytes);
+        return bytes;
+    }
+
+    private static byte[] region(final byte[] bytes, final int position, final int count) {
+        final byte[] region = new byte[count];
+        System.arraycopy(bytes, position, region, 0, count);
+        return region;
+    }
+
+    /**
+     * Wait for a stalled send to stop making progress.
+     */
+    private static void awaitStall(final FileSendFuture future) throws InterruptedException {
+        long sent;
+        do {
+            sent = future.getBytesSent();
+            Thread.sleep(200L);
+        } while (future.getBytesSent() != sent);
+    }
+
+    @Test
+    public void sendInChunks() throws Exception {
+        final StreamConnection connection = connect(OptionMap.EMPTY);
+        final byte[] bytes = writeFile(1000000);
+        final ConduitStreamSinkChannel sink = connection.getSinkChannel();
+        final ChannelListener<Channel> writeListener = ChannelListeners.closingChannelListener();
+        sink.setWriteListener(writeListener);
+        final FileSendFuture future = Channels.sendFile(sink, fileChannel, 1000L, 900000L, 65536L);
+        assertEquals(900000L, future.getCount());
+        assertArrayEquals(region(bytes, 1000, 900000), readFully(900000));
+        assertEquals(900000L, future.get().longValue());
+        assertEquals(900000L, future.getBytesSent());
+        // the channel's own listener is back and writes are suspended
+        assertSame(writeListener, sink.getWriteListener());
+        assertFalse(sink.isWriteResumed());
+    }
+
+    @Test
+    public void sendPastEndOfFile() throws Exception {
+        final StreamConnection connection = connect(OptionMap.EMPTY);
+        final byte[] bytes = writeFile(5000);
+        final FileSendFuture future = Channels.sendFile(connection.getSinkChannel(), fileChannel, 0L, 10000L);
+        assertArrayEquals(bytes, readFully(5000));
+        assertEquals(IoFuture.Status.FAILED, future.await(10L, TimeUnit.SECONDS));
+        assertTrue(future.getException() instanceof EOFException);
+        assertEquals(5000L, future.getBytesSent());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        final StreamConnection connection = connect(OptionMap.EMPTY);
+        // the client does not read, so the send stalls once the socket buffers are full
+        randomAccessFile.setLength(64L * 1024L * 1024L);
+        final FileSendFuture future = Channels.sendFile(connection.getSinkChannel(), fileChannel, 0L, randomAccessFile.length());
+        awaitStall(future);
+        future.cancel();
+        assertEquals(IoFuture.Status.CANCELLED, future.await(10L, TimeUnit.SECONDS));
+        assertTrue(future.getBytesSent() < future.getCount());
+        assertFalse(connection.getSinkChannel().isWriteResumed());
+    }
+
+    @Test
+    public void channelClosed() throws Exception {
+        final StreamConnection connection = connect(OptionMap.EMPTY);
+        randomAccessFile.setLength(64L * 1024L * 1024L);
+        final CountDownLatch closed = new CountDownLatch(1);
+        connection.getSinkChannel().setCloseListener(new ChannelListener<ConduitStreamSinkChannel>() {
+            public void handleEvent(final ConduitStreamSinkChannel channel) {
+                closed.countDown();
+            }
+        });
+        final FileSendFuture future = Channels.sendFile(connection.getSinkChannel(), fileChannel, 0L, randomAccessFile.length());
+        awaitStall(future);
+        connection.close();
+        assertEquals(IoFuture.Status.FAILED, future.await(10L, TimeUnit.SECONDS));
+        assertTrue(future.getException() instanceof ClosedChannelException);
+        // the original close listener is still called
+        assertTrue(closed.await(10L, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.StreamConnectionPool;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Test for {@link StreamConnectionPool}.
+ */
+public class StreamConnectionPoolTestCase {
+
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private InetSocketAddress address;
+    private StreamConnectionPool pool;
+    private final List<StreamConnection> accepted = Collections.synchronizedList(new ArrayList<StreamConnection>());
+
+    @Before
+    public void createServer() throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", StreamConnectionPoolTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 2, Options.THREAD_DAEMON, true));
+        server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                StreamConnection connection;
+                try {
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, OptionMap.EMPTY);
+        server.resumeAccepts();
+        address = server.getLocalAddress(InetSocketAddress.class);
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        if (pool != null) {
+            pool.close();
+        }
+        synchronized (accepted) {
+            for (StreamConnection connection : accepted) {
+                IoUtils.safeClose(connection);
+            }
+        }
+        IoUtils.safeClose(server);
+        worker.shutdown();
+        worker.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    private static void awaitIdleCount(final StreamConnectionPool pool, final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (pool.getIdleCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(count, pool.getIdleCount());
+    }
+
+    private static void awaitAcquiredCount(final StreamConnectionPool pool, final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (pool.getAcquiredCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(count, pool.getAcquiredCount());
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        pool = new StreamConnectionPool(worker, 4, 1L, TimeUnit.MINUTES);
+        final XnioIoThread thread = worker.getIoThread();
+        final StreamConnection connection = pool.acquire(thread, address, OptionMap.EMPTY).get();
+        assertSame(thread, connection.getIoThread());
+        assertEquals(1L, pool.getMissCount());
+        pool.release(connection);
+        awaitIdleCount(pool, 1);
+        assertSame(connection, pool.acquire(thread, address, OptionMap.EMPTY).get());
+        assertEquals(1L, pool.getHitCount());
+        assertEquals(0, pool.getIdleCount());
+        // a different option map is a different destination
+        final StreamConnection other = pool.acquire(thread, address, OptionMap.create(Options.TCP_NODELAY, true)).get();
+        assertNotSame(connection, other);
+        assertEquals(2L, pool.getMissCount());
+        IoUtils.safeClose(connection);
+        IoUtils.safeClose(other);
+    }
+
+    @Test
+    public void maxIdleTime() throws Exception {
+        pool = new StreamConnectionPool(worker, 4, 100L, TimeUnit.MILLISECONDS);
+        final StreamConnection connection = pool.acquire(worker.getIoThread(), address, OptionMap.EMPTY).get();
+        pool.release(connection);
+        awaitIdleCount(pool, 1);
+        awaitIdleCount(pool, 0);
+        assertEquals(1L, pool.getEvictionCount());
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void closedByPeer() throws Exception {
+        pool = new StreamConnectionPool(worker, 4, 1L, TimeUnit.MINUTES);
+        final XnioIoThread thread = worker.getIoThread();
+        final StreamConnection connection = pool.acquire(thread, address, OptionMap.EMPTY).get();
+        pool.release(connection);
+        awaitIdleCount(pool, 1);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (accepted.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        IoUtils.safeClose(accepted.get(0));
+        // the idle connection becomes readable and is evicted
+        awaitIdleCount(pool, 0);
+        assertEquals(1L, pool.getEvictionCount());
+        final StreamConnection next = pool.acquire(thread, address, OptionMap.EMPTY).get();
+        assertNotSame(connection, next);
+        assertEquals(2L, pool.getMissCount());
+        IoUtils.safeClose(next);
+    }
+
+    @Test
+    public void prewarm() throws Exception {
+        pool = new StreamConnectionPool(worker, 2, 1L, TimeUnit.MINUTES);
+        final XnioIoThread thread = worker.getIoThread();
+        // limited by the maximum idle count
+        pool.prewarm(thread, address, OptionMap.EMPTY, 3);
+        awaitIdleCount(pool, 2);
+        final StreamConnection connection = pool.acquire(thread, address, OptionMap.EMPTY).get();
+        assertEquals(1L, pool.getHitCount());
+        assertEquals(0L, pool.getMissCount());
+        pool.close();
+        awaitIdleCount(pool, 0);
+        // released after close, so closed
+        pool.release(connection);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (connection.isOpen() && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void closedWhileAcquired() throws Exception {
+        pool = new StreamConnectionPool(worker, 4, 1L, TimeUnit.MINUTES);
+        final XnioIoThread thread = worker.getIoThread();
+        final StreamConnection opened = pool.acquire(thread, address, OptionMap.EMPTY).get();
+        final StreamConnection reused = pool.acquire(thread, address, OptionMap.EMPTY).get();
+        pool.release(reused);
+        awaitIdleCount(pool, 1);
+        assertSame(reused, pool.acquire(thread, address, OptionMap.EMPTY).get());
+        awaitAcquiredCount(pool, 2);
+        final CountDownLatch closed = new CountDownLatch(1);
+        opened.setCloseListener(new ChannelListener<StreamConnection>() {
+            public void handleEvent(final StreamConnection channel) {
+                closed.countDown();
+            }
+        });
+        // closed instead of released, from outside of the I/O thread
+        IoUtils.safeClose(opened);
+        IoUtils.safeClose(reused);
+        awaitAcquiredCount(pool, 0);
+        // the user's close listener is unaffected
+        assertTrue(closed.await(5L, TimeUnit.SECONDS));
+        assertEquals(0, pool.getIdleCount());
+    }
+}
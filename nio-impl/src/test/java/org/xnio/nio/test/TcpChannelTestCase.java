@@ -100,10 +100,10 @@ public class TcpChannelTestCase extends AbstractNioStreamChannelTest {
     @Test
     public void optionSetup() throws IOException {
         initChannels();
-        final Option<?>[] unsupportedOptions = OptionHelper.getNotSupportedOptions(Options.CLOSE_ABORT,
+        final Option<?>[] unsupportedOptions = OptionHelper.getNotSupportedOptions(Options.CLOSE_ABORT, Options.CORK,
                 Options.IP_TRAFFIC_CLASS, Options.KEEP_ALIVE, Options.READ_TIMEOUT, Options.RECEIVE_BUFFER,
                 Options.RECEIVE_BUFFER, Options.SEND_BUFFER, Options.TCP_NODELAY, Options.TCP_OOB_INLINE,
-                Options.WRITE_TIMEOUT);
+                Options.WRITE_COALESCING, Options.WRITE_TIMEOUT);
         for (Option<?> option: unsupportedOptions) {
             assertFalse("Channel supports " + option, channel.supportsOption(option));
             assertNull("Expected null value for option " + option + " but got " + channel.getOption(option) + " instead",
@@ -112,6 +112,8 @@ public class TcpChannelTestCase extends AbstractNioStreamChannelTest {
 
         assertTrue(channel.supportsOption(Options.CLOSE_ABORT));
         assertFalse(channel.getOption(Options.CLOSE_ABORT));
+        assertTrue(channel.supportsOption(Options.CORK));
+        assertFalse(channel.getOption(Options.CORK));
         assertTrue(channel.supportsOption(Options.IP_TRAFFIC_CLASS));
         assertEquals(0, (int) channel.getOption(Options.IP_TRAFFIC_CLASS));
         assertTrue(channel.supportsOption(Options.KEEP_ALIVE));
@@ -126,6 +128,8 @@ public class TcpChannelTestCase extends AbstractNioStreamChannelTest {
         assertNotNull(channel.getOption(Options.TCP_NODELAY));
         assertTrue(channel.supportsOption(Options.TCP_OOB_INLINE));
         assertFalse(channel.getOption(Options.TCP_OOB_INLINE));
+        assertTrue(channel.supportsOption(Options.WRITE_COALESCING));
+        assertFalse(channel.getOption(Options.WRITE_COALESCING));
         assertTrue(channel.supportsOption(Options.WRITE_TIMEOUT));
         assertEquals(0, (int) channel.getOption(Options.WRITE_TIMEOUT));
 
@@ -100,10 +100,10 @@ public class TcpConnectionTestCase extends AbstractStreamSinkSourceChannelTest<S
     @Test
     public void optionSetup() throws IOException {
         initChannels();
-        final Option<?>[] unsupportedOptions = OptionHelper.getNotSupportedOptions(Options.CLOSE_ABORT,
+        final Option<?>[] unsupportedOptions = OptionHelper.getNotSupportedOptions(Options.CLOSE_ABORT, Options.CORK,
                 Options.IP_TRAFFIC_CLASS, Options.KEEP_ALIVE, Options.READ_TIMEOUT, Options.RECEIVE_BUFFER,
                 Options.RECEIVE_BUFFER, Options.SEND_BUFFER, Options.TCP_NODELAY, Options.TCP_OOB_INLINE,
-                Options.WRITE_TIMEOUT);
+                Options.WRITE_COALESCING, Options.WRITE_TIMEOUT);
         for (Option<?> option: unsupportedOptions) {
             assertFalse("Channel supports " + option, connection.supportsOption(option));
             assertNull("Expected null value for option " + option + " but got " + connection.getOption(option) + " instead",
@@ -112,6 +112,8 @@ public class TcpConnectionTestCase extends AbstractStreamSinkSourceChannelTest<S
 
         assertTrue(connection.supportsOption(Options.CLOSE_ABORT));
         assertFalse(connection.getOption(Options.CLOSE_ABORT));
+        assertTrue(connection.supportsOption(Options.CORK));
+        assertFalse(connection.getOption(Options.CORK));
         assertTrue(connection.supportsOption(Options.IP_TRAFFIC_CLASS));
         assertEquals(0, (int) connection.getOption(Options.IP_TRAFFIC_CLASS));
         assertTrue(connection.supportsOption(Options.KEEP_ALIVE));
@@ -126,6 +128,8 @@ public class TcpConnectionTestCase extends AbstractStreamSinkSourceChannelTest<S
         assertNotNull(connection.getOption(Options.TCP_NODELAY));
         assertTrue(connection.supportsOption(Options.TCP_OOB_INLINE));
         assertFalse(connection.getOption(Options.TCP_OOB_INLINE));
+        assertTrue(connection.supportsOption(Options.WRITE_COALESCING));
+        assertFalse(connection.getOption(Options.WRITE_COALESCING));
         assertTrue(connection.supportsOption(Options.WRITE_TIMEOUT));
         assertEquals(0, (int) connection.getOption(Options.WRITE_TIMEOUT));
 
@@ -0,0 +1,309 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xnio.ChannelListener;
+import org.xnio.IoThreadSelection;
+import org.xnio.IoUtils;
+import org.xnio.Option;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Test for the accept path of the NIO TCP server.
+ */
+public class TcpServerAcceptTestCase {
+
+    private static final int THREADS = 4;
+
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private final List<StreamConnection> accepted = Collections.synchronizedList(new ArrayList<StreamConnection>());
+    private final List<Socket> clients = new ArrayList<Socket>();
+
+    private XnioWorker createWorker(final OptionMap optionMap) throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", TcpServerAcceptTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().set(Options.WORKER_IO_THREADS, THREADS).set(Options.THREAD_DAEMON, true).addAll(optionMap).getMap());
+        return worker;
+    }
+
+    private AcceptingChannel<StreamConnection> createServer(final OptionMap optionMap, final CountDownLatch latch, final Set<Thread> threads) throws IOException {
+        return createServer(optionMap, latch, threads, true);
+    }
+
+    private AcceptingChannel<StreamConnection> createServer(final OptionMap optionMap, final CountDownLatch latch, final Set<Thread> threads, final boolean acceptAll) throws IOException {
+        server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), new ChannelListener<AcceptingChannel<StreamConnection>>() {
+            public void handleEvent(final AcceptingChannel<StreamConnection> channel) {
+                StreamConnection connection;
+                try {
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                        synchronized (threads) {
+                            threads.add(Thread.currentThread());
+                        }
+                        latch.countDown();
+                        if (! acceptAll) {
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, optionMap);
+        server.resumeAccepts();
+        return server;
+    }
+
+    private Object getServerAttribute(final String workerName, final String attribute) throws Exception {
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=" + ObjectName.quote(workerName) + ",address=" + ObjectName.quote(String.valueOf(server.getLocalAddress())));
+        return ManagementFactory.getPlatformMBeanServer().getAttribute(name, attribute);
+    }
+
+    private void connect(final int count) throws IOException {
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        for (int i = 0; i < count; i ++) {
+            clients.add(new Socket(address.getAddress(), address.getPort()));
+        }
+    }
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        for (Socket client : clients) {
+            IoUtils.safeClose(client);
+        }
+        synchronized (accepted) {
+            for (StreamConnection connection : accepted) {
+                IoUtils.safeClose(connection);
+            }
+        }
+        IoUtils.safeClose(server);
+        if (worker != null) {
+            worker.shutdown();
+            worker.awaitTermination(1L, TimeUnit.MINUTES);
+            worker = null;
+        }
+    }
+
+    @Test
+    public void reusePort() throws Exception {
+        createWorker(OptionMap.EMPTY);
+        final int count = 40;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final Set<Thread> threads = new HashSet<Thread>();
+        createServer(OptionMap.create(Options.REUSE_PORT, true), latch, threads);
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        assertEquals(count, accepted.size());
+        if (server.getOption(Options.REUSE_PORT).booleanValue()) {
+            // the kernel spreads the connections over the per-thread sockets
+            synchronized (threads) {
+                assertTrue(threads.size() > 1);
+            }
+        }
+    }
+
+    @Test
+    public void acceptBatch() throws Exception {
+        createWorker(OptionMap.create(Options.WORKER_NAME, "batch-test"));
+        final int count = 40;
+        final CountDownLatch latch = new CountDownLatch(count);
+        // the listener only accepts one connection per invocation
+        createServer(OptionMap.create(Options.ACCEPT_BATCH_SIZE, 4), latch, new HashSet<Thread>(), false);
+        assertEquals(Integer.valueOf(4), server.getOption(Options.ACCEPT_BATCH_SIZE));
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(count), getServerAttribute("batch-test", "AcceptCount"));
+        final int max = ((Integer) getServerAttribute("batch-test", "MaxAcceptsPerWakeup")).intValue();
+        assertTrue(max >= 1 && max <= 4);
+        assertTrue(((Long) getServerAttribute("batch-test", "AcceptWakeupCount")).longValue() >= count / 4);
+    }
+
+    @Test
+    public void acceptBatchLimitsGreedyListener() throws Exception {
+        createWorker(OptionMap.create(Options.WORKER_NAME, "greedy-test"));
+        final int count = 40;
+        final CountDownLatch latch = new CountDownLatch(count);
+        createServer(OptionMap.create(Options.ACCEPT_BATCH_SIZE, 2), latch, new HashSet<Thread>());
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        assertTrue(((Integer) getServerAttribute("greedy-test", "MaxAcceptsPerWakeup")).intValue() <= 2);
+    }
+
+    @Test
+    public void acceptThreads() throws Exception {
+        createWorker(OptionMap.create(Options.WORKER_NAME, "accept-thread-test", Options.WORKER_ACCEPT_THREADS, 1));
+        final int count = 40;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final Set<Thread> threads = new HashSet<Thread>();
+        createServer(OptionMap.EMPTY, latch, threads);
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        assertEquals(count, accepted.size());
+        assertEquals(Long.valueOf(count), getServerAttribute("accept-thread-test", "AcceptCount"));
+        // the accept thread only accepts; the connections are set up on the I/O threads
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                assertTrue(thread.getName(), thread.getName().contains("I/O"));
+            }
+        }
+        for (StreamConnection connection : accepted) {
+            assertTrue(connection.getIoThread().getName().contains("I/O"));
+        }
+    }
+
+    @Test
+    public void leastConnectionsPlacement() throws Exception {
+        createWorker(OptionMap.EMPTY);
+        final int count = THREADS * 10;
+        final CountDownLatch latch = new CountDownLatch(count);
+        createServer(OptionMap.create(Options.ACCEPT_IO_THREAD_SELECTION, IoThreadSelection.LEAST_CONNECTIONS), latch, new HashSet<Thread>());
+        assertEquals(IoThreadSelection.LEAST_CONNECTIONS, server.getOption(Options.ACCEPT_IO_THREAD_SELECTION));
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        final Map<XnioIoThread, Integer> counts = new HashMap<XnioIoThread, Integer>();
+        synchronized (accepted) {
+            for (StreamConnection connection : accepted) {
+                final Integer current = counts.get(connection.getIoThread());
+                counts.put(connection.getIoThread(), Integer.valueOf(current == null ? 1 : current.intValue() + 1));
+            }
+        }
+        assertEquals(THREADS, counts.size());
+        // concurrent accepts may race for the same thread, but never by much
+        for (Integer threadCount : counts.values()) {
+            assertTrue(counts.toString(), Math.abs(threadCount.intValue() - count / THREADS) <= THREADS);
+        }
+    }
+
+    @Test
+    public void acceptRateLimit() throws Exception {
+        createWorker(OptionMap.create(Options.WORKER_NAME, "rate-limit-test"));
+        final int count = 30;
+        final CountDownLatch latch = new CountDownLatch(count);
+        // five connections per second per thread, one at a time
+        createServer(OptionMap.create(Options.ACCEPT_RATE_LIMIT, 20, Options.ACCEPT_RATE_BURST, THREADS), latch, new HashSet<Thread>());
+        assertEquals(Integer.valueOf(20), server.getOption(Options.ACCEPT_RATE_LIMIT));
+        final long start = System.nanoTime();
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        // the burst plus twenty per second
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900L));
+        assertTrue(((Long) getServerAttribute("rate-limit-test", "AcceptThrottledTime")).longValue() > 0L);
+        assertTrue(((Long) getServerAttribute("rate-limit-test", "AcceptRate")).longValue() > 0L);
+        // lifting the limit lets the rest through at once
+        server.setOption(Options.ACCEPT_RATE_LIMIT, null);
+        final int before = accepted.size();
+        connect(count);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (accepted.size() < before + count && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(before + count, accepted.size());
+    }
+
+    @Test
+    public void connectionCountWithoutIoThreads() throws Exception {
+        final XnioWorker worker = createWorker(OptionMap.create(Options.WORKER_NAME, "count-test", Options.WORKER_IO_THREAD_SELECTION, IoThreadSelection.ROUND_ROBIN));
+        final int count = THREADS * 2;
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+        createServer(OptionMap.create(Options.CONNECTION_HIGH_WATER, THREADS, Options.CONNECTION_LOW_WATER, THREADS), latch, new HashSet<Thread>());
+        connect(count);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        // block every I/O thread (handed out in turn); reading the statistics must not need them
+        final CountDownLatch blocked = new CountDownLatch(THREADS);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < THREADS; i ++) {
+                worker.getIoThread().execute(new Runnable() {
+                    public void run() {
+                        blocked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            assertTrue(blocked.await(10L, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(THREADS), getServerAttribute("count-test", "ConnectionCount"));
+            assertTrue(((Long) getServerAttribute("count-test", "RejectedAcceptCount")).longValue() > 0L);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void platformSocketOptions() throws Exception {
+        createWorker(OptionMap.EMPTY);
+        final CountDownLatch latch = new CountDownLatch(1);
+        // unsupported options must not prevent the server from being created
+        createServer(OptionMap.builder().set(Options.TCP_QUICKACK, true).set(Options.TCP_FASTOPEN, 16).set(Options.TCP_DEFER_ACCEPT, 5).getMap(), latch, new HashSet<Thread>());
+        connect(1);
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        final StreamConnection connection = accepted.get(0);
+        if (server.supportsOption(Options.TCP_QUICKACK)) {
+            assertEquals(Boolean.TRUE, server.getOption(Options.TCP_QUICKACK));
+            assertTrue(connection.supportsOption(Options.TCP_QUICKACK));
+            assertNotNull(connection.getOption(Options.TCP_QUICKACK));
+        } else {
+            assertNull(server.getOption(Options.TCP_QUICKACK));
+            assertFalse(connection.supportsOption(Options.TCP_QUICKACK));
+            assertNull(connection.setOption(Options.TCP_QUICKACK, Boolean.TRUE));
+        }
+        for (Option<Integer> option : Arrays.asList(Options.TCP_FASTOPEN, Options.TCP_DEFER_ACCEPT)) {
+            if (server.supportsOption(option)) {
+                assertNotNull(server.getOption(option));
+            } else {
+                assertNull(server.getOption(option));
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+
+/**
+ * Test for write coalescing and corking of socket connections.
+ */
+public class WriteCoalescingTestCase extends AbstractNioSocketConnectionTest {
+
+    /**
+     * Run a task on the connection's I/O thread and wait for it.
+     */
+    private static void runOnIoThread(final StreamConnection connection, final IoTask task) throws Exception {
+        final BlockingQueue<Object> result = new ArrayBlockingQueue<Object>(1);
+        connection.getIoThread().execute(new Runnable() {
+            public void run() {
+                try {
+                    task.run(connection.getSinkChannel());
+                    result.add(Boolean.TRUE);
+                } catch (Throwable t) {
+                    result.add(t);
+                }
+            }
+        });
+        final Object outcome = result.poll(10L, TimeUnit.SECONDS);
+        if (outcome instanceof Throwable) {
+            throw new AssertionError(outcome);
+        }
+        assertEquals(Boolean.TRUE, outcome);
+    }
+
+    interface IoTask {
+        void run(ConduitStreamSinkChannel sink) throws IOException;
+    }
+
+    private static byte[] frames(final int count, final int size) {
+        final byte[] bytes = new byte[count * size];
+        for (int i = 0; i < bytes.length; i ++) {
+            bytes[i] = (byte) (i / size);
+        }
+        return bytes;
+    }
+
+    private static void writeFrames(final ConduitStreamSinkChannel sink, final byte[] bytes, final int size) throws IOException {
+        for (int i = 0; i < bytes.length; i += size) {
+            // every frame is taken whole
+            assertEquals(size, sink.write(ByteBuffer.wrap(bytes, i, size)));
+        }
+    }
+
+    @Test
+    public void coalescedUntilEndOfEvent() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.WRITE_COALESCING, true));
+        assertEquals(Boolean.TRUE, connection.getOption(Options.WRITE_COALESCING));
+        final byte[] bytes = frames(200, 10);
+        runOnIoThread(connection, new IoTask() {
+            public void run(final ConduitStreamSinkChannel sink) throws IOException {
+                writeFrames(sink, bytes, 10);
+            }
+        });
+        // sent without a flush
+        assertArrayEquals(bytes, readFully(bytes.length));
+    }
+
+    @Test
+    public void corkedUntilFlush() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.CORK, true));
+        assertEquals(Boolean.TRUE, connection.getOption(Options.CORK));
+        final byte[] bytes = frames(50, 10);
+        runOnIoThread(connection, new IoTask() {
+            public void run(final ConduitStreamSinkChannel sink) throws IOException {
+                writeFrames(sink, bytes, 10);
+            }
+        });
+        client.setSoTimeout(300);
+        try {
+            client.getInputStream().read();
+            throw new AssertionError("Corked bytes were sent without a flush");
+        } catch (SocketTimeoutException expected) {
+        }
+        client.setSoTimeout(10000);
+        runOnIoThread(connection, new IoTask() {
+            public void run(final ConduitStreamSinkChannel sink) throws IOException {
+                assertTrue(sink.flush());
+            }
+        });
+        assertArrayEquals(bytes, readFully(bytes.length));
+    }
+
+    @Test
+    public void largeWriteAfterHeldBytes() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.CORK, true));
+        final byte[] small = frames(10, 10);
+        final byte[] large = frames(4000, 25);
+        runOnIoThread(connection, new IoTask() {
+            public void run(final ConduitStreamSinkChannel sink) throws IOException {
+                writeFrames(sink, small, 10);
+            }
+        });
+        final AtomicReference<byte[]> received = new AtomicReference<byte[]>();
+        final Thread reader = new Thread() {
+            public void run() {
+                try {
+                    received.set(readFully(small.length + large.length));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        final ByteBuffer buffer = ByteBuffer.wrap(large);
+        reader.start();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        final boolean[] flushed = new boolean[1];
+        while (! flushed[0] && System.nanoTime() < deadline) {
+            runOnIoThread(connection, new IoTask() {
+                public void run(final ConduitStreamSinkChannel sink) throws IOException {
+                    // too large to hold, so it goes out along with the held bytes
+                    sink.write(buffer);
+                    flushed[0] = ! buffer.hasRemaining() && sink.flush();
+                }
+            });
+        }
+        assertTrue(flushed[0]);
+        reader.join(10000L);
+        final byte[] expected = new byte[small.length + large.length];
+        System.arraycopy(small, 0, expected, 0, small.length);
+        System.arraycopy(large, 0, expected, small.length, large.length);
+        assertArrayEquals(expected, received.get());
+    }
+
+    @Test
+    public void shutdownAfterHeldBytes() throws Exception {
+        final StreamConnection connection = connect(OptionMap.create(Options.CORK, true));
+        final byte[] bytes = frames(3, 1);
+        runOnIoThread(connection, new IoTask() {
+            public void run(final ConduitStreamSinkChannel sink) throws IOException {
+                writeFrames(sink, bytes, 1);
+                sink.shutdownWrites();
+                assertTrue(sink.flush());
+            }
+        });
+        assertArrayEquals(bytes, readFully(bytes.length));
+        assertEquals(-1, client.getInputStream().read());
+    }
+}